@@ -0,0 +1,49 @@
+package com.shekhar.expiringmap;
+
+/**
+ * Snapshot of a map's lookup counters.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long negativeHits;
+    private final long negativePuts;
+
+    public CacheStats(long hits, long misses, long negativeHits, long negativePuts) {
+        this.hits = hits;
+        this.misses = misses;
+        this.negativeHits = negativeHits;
+        this.negativePuts = negativePuts;
+    }
+
+    /**
+     * Gets that returned a value.
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Gets that found no entry at all.
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Gets that found a negative entry, i.e. a key known to be absent.
+     */
+    public long negativeHits() {
+        return negativeHits;
+    }
+
+    public long negativePuts() {
+        return negativePuts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits: %,d misses: %,d negative hits: %,d negative puts: %,d",
+                hits, misses, negativeHits, negativePuts);
+    }
+}
@@ -0,0 +1,405 @@
+package com.shekhar.expiringmap;
+
+import com.shekhar.expiringmap.util.Clock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ *  Expiring cache that keeps the key, value and deadline of an entry in a
+ *  single node of its own chained hash table.
+ *  <p>
+ *
+ *  Deadlines are stored as 32 bit counts of millisecond ticks since an
+ *  epoch, matching the resolution of the put API. When the clock gets
+ *  half way to the end of that range the epoch is moved forward and every
+ *  deadline is shifted down. Deadlines too far away to fit are parked in a
+ *  side table until a later epoch brings them into range. The shift walks
+ *  the whole table under the lock, so roughly every twelve days one put or
+ *  sweep step takes time proportional to the size of the map. Reads never
+ *  move the epoch.
+ *  <p>
+ *  There is no expiry queue. A get never returns an entry whose deadline
+ *  has passed, and a background thread reclaims the memory of entries
+ *  nobody read again. Each time it wakes it sweeps a share of the buckets
+ *  and carries on from there next time, so a full pass takes the same
+ *  number of wake-ups whatever the size of the table and expired entries
+ *  linger for about two seconds at most.
+ *  <p>
+ *  Overwriting a key simply replaces the node's value and deadline, so an
+ *  entry can only expire with its latest timeout.
+ *  <p>
+ *  Negative entries, recorded with {@link #putNegative(Object)}, are nodes
+ *  holding a sentinel value and are expired by the same sweep.
+ *
+ *  @param <K> the type of keys maintained by this map
+ *  @param <V> the type of mapped values
+ */
+public class CompactExpiringMap<K, V> implements ExpireMap<K, V> {
+    static final long TICK = MILLISECONDS.toNanos(1);
+    static final long SWEEP_INTERVAL_MS = 100;
+    static final int SWEEP_PASS_STEPS = 20;
+    private static final int FAR = Integer.MAX_VALUE;
+    private static final int REBASE_AT = Integer.MAX_VALUE / 2;
+    private static final int SWEEP_CHUNK = 1024;
+    private static final Object NEGATIVE = new Object();
+
+    private Clock clock;
+    private long epoch;
+    private int sweepCursor;
+    private Node<K, V>[] table = newTable(16);
+    private int size;
+    private Map<K, Long> farDeadlines = new HashMap<>();
+    private volatile long negativeTimeoutMs = ExpiringMap.DEFAULT_NEGATIVE_TIMEOUT_MS;
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder negativeHits = new LongAdder();
+    private LongAdder negativePuts = new LongAdder();
+
+    public CompactExpiringMap() {
+        this(System::nanoTime);
+    }
+
+    public CompactExpiringMap(Clock clock) {
+        this(clock, true);
+    }
+
+    /**
+     * @param startExpiryThread when false no background thread is started and
+     *                          expired entries are only reclaimed by {@link #expireDue()}
+     */
+    public CompactExpiringMap(Clock clock, boolean startExpiryThread) {
+        this.clock = clock;
+        this.epoch = clock.now();
+        if (startExpiryThread)
+            startSweeper();
+    }
+
+    private void startSweeper() {
+        Thread thread = new Thread(() -> {
+            long interval = MILLISECONDS.toNanos(SWEEP_INTERVAL_MS);
+            long lastSweep = clock.now();
+            while (true) {
+                try {
+                    Thread.sleep(SWEEP_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long now = clock.now();
+                if (now - lastSweep < interval)
+                    continue;
+                lastSweep = now;
+                sweepStep();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void put(K key, V value, long timeoutMs) {
+        store(key, value, timeoutMs);
+    }
+
+    /**
+     * Record that the key is absent, for the negative timeout.
+     *
+     * @param key
+     */
+    public void putNegative(K key) {
+        putNegative(key, negativeTimeoutMs);
+    }
+
+    /**
+     * Record that the key is absent. Until the entry expires or is replaced,
+     * get returns null and isNegative returns true.
+     *
+     * @param key
+     * @param timeoutMs
+     */
+    public synchronized void putNegative(K key, long timeoutMs) {
+        store(key, NEGATIVE, timeoutMs);
+        negativePuts.increment();
+    }
+
+    private void store(K key, Object value, long timeoutMs) {
+        validate(timeoutMs);
+
+        long elapsed = clock.now() - epoch;
+        long startTick = (elapsed + TICK - 1) / TICK;
+        long deadline = timeoutMs > Long.MAX_VALUE - startTick ? Long.MAX_VALUE : startTick + timeoutMs;
+
+        int hash = hash(key);
+        Node<K, V> node = find(key, hash);
+        if (node == null) {
+            node = new Node<>(hash, key);
+            insert(node);
+        }
+        node.value = value;
+        if (deadline < FAR) {
+            node.deadline = (int) deadline;
+            farDeadlines.remove(key);
+        } else {
+            node.deadline = FAR;
+            farDeadlines.put(key, deadline);
+        }
+        rebaseIfNeeded();
+    }
+
+    private void validate(long timeoutMs) {
+        if (timeoutMs < 0)
+            throw new IllegalArgumentException("Timeout must be a positive value");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V get(K key) {
+        Node<K, V> node = live(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node.value == NEGATIVE) {
+            negativeHits.increment();
+            return null;
+        }
+        hits.increment();
+        return (V) node.value;
+    }
+
+    /**
+     * Whether the key currently holds a negative entry.
+     *
+     * @param key
+     */
+    public synchronized boolean isNegative(K key) {
+        Node<K, V> node = live(key);
+        return node != null && node.value == NEGATIVE;
+    }
+
+    private Node<K, V> live(K key) {
+        int hash = hash(key);
+        Node<K, V> node = find(key, hash);
+        //the current tick may have passed the rebase point, so compare full length deadlines
+        if (node != null && deadline(node) <= nowTick()) {
+            unlink(key, hash);
+            return null;
+        }
+        return node;
+    }
+
+    /**
+     * Set the timeout used by {@link #putNegative(Object)}.
+     *
+     * @param timeoutMs
+     */
+    public void setNegativeTimeout(long timeoutMs) {
+        validate(timeoutMs);
+        this.negativeTimeoutMs = timeoutMs;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), negativeHits.sum(), negativePuts.sum());
+    }
+
+    @Override
+    public synchronized void remove(K key) {
+        unlink(key, hash(key));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Whether the map still holds a node for the key, even one whose deadline
+     * has passed but has not been swept yet. Unlike get it neither reclaims
+     * the node nor touches the lookup stats.
+     *
+     * @param key
+     */
+    public synchronized boolean isResident(K key) {
+        return find(key, hash(key)) != null;
+    }
+
+    /**
+     * Sweep the next {@link #SWEEP_PASS_STEPS}th of the table, wrapping round
+     * its end, and remember where to carry on.
+     *
+     * @return the number of entries removed
+     */
+    int sweepStep() {
+        int expired = 0;
+        for (int swept = 0; ; swept += SWEEP_CHUNK) {
+            synchronized (this) {
+                int step = Math.max(SWEEP_CHUNK, (table.length + SWEEP_PASS_STEPS - 1) / SWEEP_PASS_STEPS);
+                if (swept >= Math.min(step, table.length))
+                    return expired;
+                if (sweepCursor >= table.length)
+                    sweepCursor = 0;
+                rebaseIfNeeded();
+                int end = Math.min(sweepCursor + SWEEP_CHUNK, table.length);
+                expired += sweep(sweepCursor, end, nowTick());
+                sweepCursor = end;
+            }
+        }
+    }
+
+    /**
+     * Sweep the whole table on the caller's thread, removing every entry whose
+     * deadline has passed. The lock is released between chunks of buckets so
+     * readers and writers are not held up for the full sweep.
+     *
+     * @return the number of entries removed
+     */
+    public int expireDue() {
+        int expired = 0;
+        for (int start = 0; ; start += SWEEP_CHUNK) {
+            synchronized (this) {
+                if (start >= table.length)
+                    return expired;
+                rebaseIfNeeded();
+                expired += sweep(start, Math.min(start + SWEEP_CHUNK, table.length), nowTick());
+            }
+        }
+    }
+
+    private int sweep(int from, int to, long now) {
+        int expired = 0;
+        for (int i = from; i < to; i++) {
+            Node<K, V> previous = null;
+            for (Node<K, V> node = table[i]; node != null; node = node.next) {
+                if (node.deadline <= now) {
+                    if (previous == null)
+                        table[i] = node.next;
+                    else
+                        previous.next = node.next;
+                    size--;
+                    expired++;
+                } else {
+                    previous = node;
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Estimated bytes used by the map's own structures, excluding the keys and
+     * values: the bucket array, one node per entry and the side table for
+     * deadlines beyond the 32 bit range.
+     */
+    public synchronized long memoryFootprint() {
+        long node = Footprint.object(2 * 4 + 3 * Footprint.REFERENCE);
+        long farEntry = Footprint.object(4 + 3 * Footprint.REFERENCE) + Footprint.object(8);
+        long far = farDeadlines.isEmpty() ? 0
+                : Footprint.referenceArray(Footprint.hashTableLength(farDeadlines.size())) + farDeadlines.size() * farEntry;
+        return Footprint.referenceArray(table.length) + size * node + far;
+    }
+
+    private long nowTick() {
+        return (clock.now() - epoch) / TICK;
+    }
+
+    private long deadline(Node<K, V> node) {
+        return node.deadline != FAR ? node.deadline : farDeadlines.get(node.key);
+    }
+
+    private void rebaseIfNeeded() {
+        long shift = nowTick();
+        if (shift < REBASE_AT)
+            return;
+
+        epoch += shift * TICK;
+        for (Node<K, V> bucket : table) {
+            for (Node<K, V> node = bucket; node != null; node = node.next) {
+                if (node.deadline != FAR) {
+                    //anything already due stays due at the new epoch's tick zero
+                    node.deadline = (int) Math.max(node.deadline - shift, 0);
+                    continue;
+                }
+                long deadline = farDeadlines.get(node.key) - shift;
+                if (deadline < FAR) {
+                    node.deadline = (int) deadline;
+                    farDeadlines.remove(node.key);
+                } else {
+                    farDeadlines.put(node.key, deadline);
+                }
+            }
+        }
+    }
+
+    private Node<K, V> find(K key, int hash) {
+        for (Node<K, V> node = table[hash & (table.length - 1)]; node != null; node = node.next) {
+            if (node.hash == hash && node.key.equals(key))
+                return node;
+        }
+        return null;
+    }
+
+    private void insert(Node<K, V> node) {
+        if (++size > table.length * 3 / 4)
+            resize();
+        int index = node.hash & (table.length - 1);
+        node.next = table[index];
+        table[index] = node;
+    }
+
+    private void unlink(K key, int hash) {
+        int index = hash & (table.length - 1);
+        Node<K, V> previous = null;
+        for (Node<K, V> node = table[index]; node != null; previous = node, node = node.next) {
+            if (node.hash == hash && node.key.equals(key)) {
+                if (previous == null)
+                    table[index] = node.next;
+                else
+                    previous.next = node.next;
+                if (node.deadline == FAR)
+                    farDeadlines.remove(key);
+                size--;
+                return;
+            }
+        }
+    }
+
+    private void resize() {
+        Node<K, V>[] old = table;
+        table = newTable(old.length * 2);
+        for (Node<K, V> bucket : old) {
+            Node<K, V> node = bucket;
+            while (node != null) {
+                Node<K, V> next = node.next;
+                int index = node.hash & (table.length - 1);
+                node.next = table[index];
+                table[index] = node;
+                node = next;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newTable(int length) {
+        return (Node<K, V>[]) new Node<?, ?>[length];
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static class Node<K, V> {
+        private final int hash;
+        private final K key;
+        private Object value;
+        private int deadline;
+        private Node<K, V> next;
+
+        Node(int hash, K key) {
+            this.hash = hash;
+            this.key = key;
+        }
+    }
+}
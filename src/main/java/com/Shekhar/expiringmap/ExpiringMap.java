@@ -2,11 +2,14 @@ package com.shekhar.expiringmap;
 
 import com.shekhar.expiringmap.util.Clock;
 import com.shekhar.expiringmap.util.ExpiryEntry;
+import com.shekhar.expiringmap.util.NegativeExpiryEntry;
 import com.shekhar.expiringmap.util.WaitService;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
@@ -23,15 +26,45 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  *  <p>
  *  Finally new writes will notify the potentially waiting expiry
  *  thread if something more imminent turns up.
+ *  <p>
+ *  Keys known to be absent from the backing store can be recorded with
+ *  {@link #putNegative(Object)}. Such entries expire like any other but
+ *  with their own timeout, and are never returned as values.
+ *  <p>
+ *  If writes outpace the expiry thread, an {@link OverloadPolicy} decides
+ *  how puts react once the queue gets too deep or falls too far behind.
  *
  *  @param <K> the type of keys maintained by this map
  *  @param <V> the type of mapped values
  */
 
 public class ExpiringMap<K, V> implements ExpireMap<K, V> {
-    private Map<K, V> backingMap = new ConcurrentHashMap<>();
+    public static final long DEFAULT_NEGATIVE_TIMEOUT_MS = 1000;
+    private static final Object NEGATIVE = new Object();
+    private static final int RECLAIM_BATCH = 64;
+    private static final long RECLAIMER_COOLDOWN = MILLISECONDS.toNanos(100);
+    private static final long THROTTLE_STEP = MILLISECONDS.toNanos(1);
+
+    private Map<K, Object> backingMap = new ConcurrentHashMap<>();
     private Clock clock;
     private WaitService waitService;
+    private volatile long negativeTimeoutMs = DEFAULT_NEGATIVE_TIMEOUT_MS;
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder negativeHits = new LongAdder();
+    private LongAdder negativePuts = new LongAdder();
+    private ExpiryService<K> expiryService = new ExpiryService<>();
+    private volatile OverloadPolicy overloadPolicy;
+    private AtomicBoolean reclaiming = new AtomicBoolean();
+    private volatile boolean reclaimerStalled;
+    private volatile long reclaimerStalledAt;
+    private LongAdder overloads = new LongAdder();
+    private LongAdder inlineExpiries = new LongAdder();
+    private LongAdder reclaimersStarted = new LongAdder();
+    private LongAdder reclaimerExpiries = new LongAdder();
+    private LongAdder rejectedPuts = new LongAdder();
+    private LongAdder throttledPuts = new LongAdder();
+    private LongAdder throttledNanos = new LongAdder();
     private PriorityBlockingQueue<ExpiryEntry<K>> queue = new PriorityBlockingQueue<>(
             10, (e1, e2) -> e1.expiry().compareTo(e2.expiry()));
 
@@ -45,17 +78,25 @@ public class ExpiringMap<K, V> implements ExpireMap<K, V> {
     }
 
     public ExpiringMap(Clock clock, WaitService waitService) {
+        this(clock, waitService, true);
+    }
+
+    /**
+     * @param startExpiryThread when false no background thread is started and
+     *                          entries are only removed by {@link #expireDue()}
+     */
+    public ExpiringMap(Clock clock, WaitService waitService, boolean startExpiryThread) {
         this.clock = clock;
         this.waitService = waitService;
-        startExpiryService();
+        if (startExpiryThread)
+            startExpiryService();
     }
 
     private void startExpiryService() {
         Thread thread = new Thread(() -> {
-            ExpiryService service = new ExpiryService<K>();
             while (true) {
                 try {
-                    service.attemptExpiry(clock, waitService, queue, backingMap);
+                    expiryService.attemptExpiry(clock, waitService, queue, backingMap);
                 } catch (InterruptedException e) {
                     throw new RuntimeException(e);
                 }
@@ -66,12 +107,47 @@ public class ExpiringMap<K, V> implements ExpireMap<K, V> {
     }
 
     @Override
-    public synchronized void put(K key, V value, long timeoutMs) {
+    public void put(K key, V value, long timeoutMs) {
+        validate(timeoutMs);
+        admit();
+        synchronized (this) {
+            store(key, value, timeoutMs);
+        }
+    }
+
+    /**
+     * Record that the key is absent, for the negative timeout.
+     *
+     * @param key
+     */
+    public void putNegative(K key) {
+        putNegative(key, negativeTimeoutMs);
+    }
+
+    /**
+     * Record that the key is absent. Until the entry expires or is replaced,
+     * get returns null and isNegative returns true.
+     *
+     * @param key
+     * @param timeoutMs
+     */
+    public void putNegative(K key, long timeoutMs) {
         validate(timeoutMs);
+        admit();
+        synchronized (this) {
+            store(key, NEGATIVE, timeoutMs);
+        }
+        negativePuts.increment();
+    }
 
-        long expiryTime = clock.now() + MILLISECONDS.toNanos(timeoutMs);
+    private void store(K key, Object value, long timeoutMs) {
+        long now = clock.now();
+        long expiryTime = now + MILLISECONDS.toNanos(timeoutMs);
+        if (expiryTime < now) //saturate rather than wrap for very large timeouts
+            expiryTime = Long.MAX_VALUE;
 
-        queue.add(new ExpiryEntry<>(expiryTime, key));
+        //a negative entry must not expire a value that has since replaced it
+        queue.add(value == NEGATIVE ? new NegativeExpiryEntry<>(expiryTime, key, NEGATIVE) : new ExpiryEntry<>(expiryTime, key));
 
         wakeEvictionIfEarlierEntry(expiryTime);
 
@@ -87,14 +163,154 @@ public class ExpiringMap<K, V> implements ExpireMap<K, V> {
         }
     }
 
+    /**
+     * Apply the overload policy, if any, before a write is queued.
+     */
+    private void admit() {
+        OverloadPolicy policy = overloadPolicy;
+        if (policy == null || !isOverloaded(policy))
+            return;
+
+        overloads.increment();
+        switch (policy.action()) {
+            case CALLER_RUNS:
+                inlineExpiries.add(expiryService.expireDue(clock, queue, backingMap, RECLAIM_BATCH));
+                break;
+            case EXTRA_RECLAIMER:
+                startReclaimer(policy);
+                break;
+            case REJECT:
+                rejectedPuts.increment();
+                throw new IllegalStateException("Expiry queue is overloaded");
+            case THROTTLE:
+                throttle(policy);
+                break;
+        }
+    }
+
+    private boolean isOverloaded(OverloadPolicy policy) {
+        return policy.isOverloaded(queue.size(), expiryLag());
+    }
+
+    /**
+     * A reclaimer that stopped while the queue was still overloaded had run
+     * out of due entries, so another one is not started until the cool-down
+     * has passed on the map's clock.
+     */
+    private void startReclaimer(OverloadPolicy policy) {
+        if (!reclaiming.compareAndSet(false, true))
+            return;
+        //checked after claiming the flag, which the previous reclaimer clears only once it has recorded a stall
+        if (reclaimerStalled && clock.now() - reclaimerStalledAt < RECLAIMER_COOLDOWN) {
+            reclaiming.set(false);
+            return;
+        }
+
+        reclaimersStarted.increment();
+        Thread thread = new Thread(() -> {
+            try {
+                int expired;
+                do {
+                    expired = expiryService.expireDue(clock, queue, backingMap, RECLAIM_BATCH);
+                    reclaimerExpiries.add(expired);
+                } while (expired > 0 && isOverloaded(policy));
+            } finally {
+                reclaimerStalledAt = clock.now();
+                reclaimerStalled = isOverloaded(policy);
+                reclaiming.set(false);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Wait through the wait service, in steps of at most a millisecond, until
+     * the overload clears or the maximum wait has passed on the map's clock.
+     */
+    private void throttle(OverloadPolicy policy) {
+        throttledPuts.increment();
+        long start = clock.now();
+        long deadline = start + MILLISECONDS.toNanos(policy.maxWaitMs());
+        try {
+            long remaining;
+            while (isOverloaded(policy) && (remaining = deadline - clock.now()) > 0) {
+                long step = Math.min(remaining, THROTTLE_STEP);
+                synchronized (WaitService.class) {
+                    waitService.doWait(step / THROTTLE_STEP, (int) (step % THROTTLE_STEP));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            throttledNanos.add(clock.now() - start);
+        }
+    }
+
+    private long expiryLag() {
+        ExpiryEntry<K> head = queue.peek();
+        if (head == null)
+            return 0;
+        long now = clock.now();
+        return head.expiry() > now ? 0 : now - head.expiry();
+    }
+
     private void validate(long timeoutMs) {
         if (timeoutMs < 0)
             throw new IllegalArgumentException("Timeout must be a positive value");
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public synchronized V get(K key) {
-        return backingMap.get(key);
+        Object value = backingMap.get(key);
+        if (value == NEGATIVE) {
+            negativeHits.increment();
+            return null;
+        }
+        if (value == null)
+            misses.increment();
+        else
+            hits.increment();
+        return (V) value;
+    }
+
+    /**
+     * Whether the key currently holds a negative entry.
+     *
+     * @param key
+     */
+    public boolean isNegative(K key) {
+        return backingMap.get(key) == NEGATIVE;
+    }
+
+    /**
+     * Set the timeout used by {@link #putNegative(Object)}.
+     *
+     * @param timeoutMs
+     */
+    public void setNegativeTimeout(long timeoutMs) {
+        validate(timeoutMs);
+        this.negativeTimeoutMs = timeoutMs;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), negativeHits.sum(), negativePuts.sum());
+    }
+
+    /**
+     * Set how puts behave when the expiry queue is overloaded, or null to let it grow without limit.
+     *
+     * @param policy
+     */
+    public void setOverloadPolicy(OverloadPolicy policy) {
+        this.overloadPolicy = policy;
+    }
+
+    public OverloadStats overloadStats() {
+        return new OverloadStats(queue.size(), expiryLag(), overloads.sum(), inlineExpiries.sum(),
+                reclaimersStarted.sum(), reclaimerExpiries.sum(), rejectedPuts.sum(),
+                throttledPuts.sum(), throttledNanos.sum());
     }
 
     @Override
@@ -102,7 +318,51 @@ public class ExpiringMap<K, V> implements ExpireMap<K, V> {
         backingMap.remove(key);
     }
 
+    /**
+     * Remove every entry whose expiry time has been reached, on the caller's thread.
+     * This may run alongside the background expiry thread.
+     *
+     * @return the number of expiry entries processed
+     */
+    public int expireDue() {
+        return expiryService.expireDue(clock, queue, backingMap);
+    }
+
     public int size() {
         return backingMap.size();
     }
+
+    /**
+     * Whether the map still holds an entry for the key, including a negative
+     * one. Unlike get it does not touch the lookup stats.
+     *
+     * @param key
+     */
+    public boolean isResident(K key) {
+        return backingMap.containsKey(key);
+    }
+
+    /**
+     * Estimated bytes used by the map's own structures, excluding the keys and
+     * values. Each entry costs a hash map node and table slot, and each expiry
+     * entry on the queue, including those left behind by overwrites, costs an
+     * object and an array slot. The extra reference carried by the expiry
+     * entries of short lived negative entries is not counted.
+     */
+    public long memoryFootprint() {
+        int entries = backingMap.size();
+        int scheduled = queue.size();
+        long hashNode = Footprint.object(4 + 3 * Footprint.REFERENCE);
+        long expiryEntry = Footprint.object(8 + Footprint.REFERENCE);
+        return Footprint.referenceArray(Footprint.hashTableLength(entries)) + entries * hashNode
+                + Footprint.referenceArray(scheduled) + scheduled * expiryEntry;
+    }
+
+    /**
+     * Number of expiry entries waiting on the queue, including those left
+     * behind by overwritten keys.
+     */
+    public int scheduled() {
+        return queue.size();
+    }
 }
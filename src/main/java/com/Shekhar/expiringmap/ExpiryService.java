@@ -2,6 +2,7 @@ package com.shekhar.expiringmap;
 
 import com.shekhar.expiringmap.util.Clock;
 import com.shekhar.expiringmap.util.ExpiryEntry;
+import com.shekhar.expiringmap.util.NegativeExpiryEntry;
 import com.shekhar.expiringmap.util.WaitService;
 
 import java.util.Map;
@@ -15,20 +16,53 @@ import java.util.concurrent.BlockingQueue;
 public class ExpiryService<K> {
 
     public void attemptExpiry(Clock clock, WaitService waitService, BlockingQueue<ExpiryEntry<K>> queue, Map<K, ?> backingMap) throws InterruptedException {
-        ExpiryEntry head = queue.take();
+        ExpiryEntry<K> head = queue.take();
 
         if (head.expiry() <= clock.now()) {
-            backingMap.remove(head.key());
+            expire(head, backingMap);
         } else {
             waitForItToExpire(clock, waitService, queue, head);
         }
     }
 
-    private void waitForItToExpire(Clock clock, WaitService waitService, BlockingQueue<ExpiryEntry<K>> queue, ExpiryEntry head) throws InterruptedException {
+    /**
+     * Expire every due entry on the caller's thread. Safe to run alongside
+     * {@link #attemptExpiry}, which may briefly see the queue empty while a
+     * head that is not yet due is polled and offered back.
+     */
+    public int expireDue(Clock clock, BlockingQueue<ExpiryEntry<K>> queue, Map<K, ?> backingMap) {
+        return expireDue(clock, queue, backingMap, Integer.MAX_VALUE);
+    }
+
+    public int expireDue(Clock clock, BlockingQueue<ExpiryEntry<K>> queue, Map<K, ?> backingMap, int limit) {
+        int expired = 0;
+        long now = clock.now();
+        ExpiryEntry<K> head;
+        while (expired < limit && (head = queue.poll()) != null) {
+            if (head.expiry() > now) {
+                queue.offer(head);
+                break;
+            }
+            expire(head, backingMap);
+            expired++;
+        }
+        return expired;
+    }
+
+    private void expire(ExpiryEntry<K> entry, Map<K, ?> backingMap) {
+        if (entry instanceof NegativeExpiryEntry)
+            backingMap.remove(entry.key(), ((NegativeExpiryEntry<K>) entry).expected());
+        else
+            backingMap.remove(entry.key());
+    }
+
+    private void waitForItToExpire(Clock clock, WaitService waitService, BlockingQueue<ExpiryEntry<K>> queue, ExpiryEntry<K> head) throws InterruptedException {
         long waitTime = head.expiry() - clock.now();
         queue.offer(head);
         synchronized (WaitService.class) {
-            if (waitTime > 0 && queue.peek().key().equals(head.key())) //ensure head has not been replaced
+            //ensure head has not been replaced, or briefly polled by expireDue on another thread
+            ExpiryEntry<K> current = queue.peek();
+            if (waitTime > 0 && current != null && current.key().equals(head.key()))
                 waitService.doWait(ms(waitTime), ns(waitTime));
         }
     }
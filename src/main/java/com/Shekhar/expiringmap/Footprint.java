@@ -0,0 +1,37 @@
+package com.shekhar.expiringmap;
+
+/**
+ * Shallow size estimates for a 64 bit JVM with compressed oops, which is
+ * the default for heaps under 32GB. Keys and values themselves are not
+ * counted since the maps cannot see inside them.
+ */
+final class Footprint {
+    static final int REFERENCE = 4;
+    static final int OBJECT_HEADER = 12;
+    static final int ARRAY_HEADER = 16;
+
+    private Footprint() {
+    }
+
+    static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    static long referenceArray(long length) {
+        return align(ARRAY_HEADER + length * REFERENCE);
+    }
+
+    /**
+     * Length of a power of two hash table holding size entries at a 0.75 load factor.
+     */
+    static long hashTableLength(long size) {
+        long length = 16;
+        while (length * 3 / 4 < size)
+            length <<= 1;
+        return length;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
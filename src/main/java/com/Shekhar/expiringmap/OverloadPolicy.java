@@ -0,0 +1,86 @@
+package com.shekhar.expiringmap;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * What a put does when the expiry queue falls behind.
+ * <p>
+ * The queue is overloaded when it holds at least maxScheduled entries, or
+ * when its head has been due for longer than maxLagMs. Pass
+ * Integer.MAX_VALUE or Long.MAX_VALUE to ignore either threshold.
+ * <p>
+ * CALLER_RUNS and EXTRA_RECLAIMER can only drain entries that are due, so
+ * they cure lag but not depth made of long timeouts or of entries left
+ * behind by overwrites. Only REJECT puts a hard bound on queue depth;
+ * THROTTLE slows writers down but lets them through after maxWaitMs.
+ */
+public class OverloadPolicy {
+
+    public enum Action {
+        /** The writer expires a batch of due entries itself before putting. */
+        CALLER_RUNS,
+        /**
+         * A temporary thread drains due entries until the overload clears. If it
+         * runs out of due entries first, no new one starts for a short cool-down.
+         */
+        EXTRA_RECLAIMER,
+        /** The put fails with an IllegalStateException. */
+        REJECT,
+        /**
+         * The writer waits, up to maxWaitMs on the map's clock, for the overload
+         * to clear. The wait goes through the map's WaitService.
+         */
+        THROTTLE
+    }
+
+    private final Action action;
+    private final int maxScheduled;
+    private final long maxLagNanos;
+    private final long maxWaitMs;
+
+    private OverloadPolicy(Action action, int maxScheduled, long maxLagMs, long maxWaitMs) {
+        if (maxScheduled <= 0 || maxLagMs < 0 || maxWaitMs < 0)
+            throw new IllegalArgumentException("Thresholds must be positive values");
+
+        this.action = action;
+        this.maxScheduled = maxScheduled;
+        this.maxLagNanos = MILLISECONDS.toNanos(maxLagMs);
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public static OverloadPolicy callerRuns(int maxScheduled, long maxLagMs) {
+        return new OverloadPolicy(Action.CALLER_RUNS, maxScheduled, maxLagMs, 0);
+    }
+
+    public static OverloadPolicy extraReclaimer(int maxScheduled, long maxLagMs) {
+        return new OverloadPolicy(Action.EXTRA_RECLAIMER, maxScheduled, maxLagMs, 0);
+    }
+
+    public static OverloadPolicy reject(int maxScheduled, long maxLagMs) {
+        return new OverloadPolicy(Action.REJECT, maxScheduled, maxLagMs, 0);
+    }
+
+    public static OverloadPolicy throttle(int maxScheduled, long maxLagMs, long maxWaitMs) {
+        return new OverloadPolicy(Action.THROTTLE, maxScheduled, maxLagMs, maxWaitMs);
+    }
+
+    public Action action() {
+        return action;
+    }
+
+    public int maxScheduled() {
+        return maxScheduled;
+    }
+
+    public long maxLagNanos() {
+        return maxLagNanos;
+    }
+
+    public long maxWaitMs() {
+        return maxWaitMs;
+    }
+
+    boolean isOverloaded(int scheduled, long lagNanos) {
+        return scheduled >= maxScheduled || lagNanos > maxLagNanos;
+    }
+}
@@ -0,0 +1,86 @@
+package com.shekhar.expiringmap;
+
+/**
+ * Snapshot of how often, and how, a map has handled an overloaded expiry queue.
+ */
+public class OverloadStats {
+    private final int scheduled;
+    private final long expiryLagNanos;
+    private final long overloads;
+    private final long inlineExpiries;
+    private final long reclaimersStarted;
+    private final long reclaimerExpiries;
+    private final long rejectedPuts;
+    private final long throttledPuts;
+    private final long throttledNanos;
+
+    public OverloadStats(int scheduled, long expiryLagNanos, long overloads, long inlineExpiries,
+                         long reclaimersStarted, long reclaimerExpiries, long rejectedPuts,
+                         long throttledPuts, long throttledNanos) {
+        this.scheduled = scheduled;
+        this.expiryLagNanos = expiryLagNanos;
+        this.overloads = overloads;
+        this.inlineExpiries = inlineExpiries;
+        this.reclaimersStarted = reclaimersStarted;
+        this.reclaimerExpiries = reclaimerExpiries;
+        this.rejectedPuts = rejectedPuts;
+        this.throttledPuts = throttledPuts;
+        this.throttledNanos = throttledNanos;
+    }
+
+    /**
+     * Current depth of the expiry queue.
+     */
+    public int scheduled() {
+        return scheduled;
+    }
+
+    /**
+     * How long the head of the expiry queue has been due, or 0 if it is not due yet.
+     */
+    public long expiryLagNanos() {
+        return expiryLagNanos;
+    }
+
+    /**
+     * Puts that found the queue over a threshold.
+     */
+    public long overloads() {
+        return overloads;
+    }
+
+    public long inlineExpiries() {
+        return inlineExpiries;
+    }
+
+    public long reclaimersStarted() {
+        return reclaimersStarted;
+    }
+
+    public long reclaimerExpiries() {
+        return reclaimerExpiries;
+    }
+
+    public long rejectedPuts() {
+        return rejectedPuts;
+    }
+
+    public long throttledPuts() {
+        return throttledPuts;
+    }
+
+    /**
+     * Total time throttled puts spent waiting, measured on the map's clock.
+     */
+    public long throttledNanos() {
+        return throttledNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("scheduled: %,d lag: %,d ns overloads: %,d inline expiries: %,d " +
+                        "reclaimers started: %,d reclaimer expiries: %,d rejected: %,d throttled: %,d (%,d ns)",
+                scheduled, expiryLagNanos, overloads, inlineExpiries, reclaimersStarted, reclaimerExpiries,
+                rejectedPuts, throttledPuts, throttledNanos);
+    }
+}
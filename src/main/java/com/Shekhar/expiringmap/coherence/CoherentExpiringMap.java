@@ -0,0 +1,115 @@
+package com.shekhar.expiringmap.coherence;
+
+import com.shekhar.expiringmap.ExpireMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Keeps a local {@link ExpireMap} coherent with its peers.
+ *  <p>
+ *
+ *  Every local put or remove marks the key as invalidated. A background
+ *  thread publishes the marked keys through the transport once per flush
+ *  interval, so repeated writes to a key within an interval go out as a
+ *  single invalidation.
+ *  <p>
+ *  Invalidations received from peers remove the key from the local map
+ *  and are not published again.
+ *  <p>
+ *  If the transport fails to publish a batch, the failure is counted and
+ *  the keys are kept for the next flush.
+ *
+ *  @param <K> the type of keys maintained by this map
+ *  @param <V> the type of mapped values
+ */
+public class CoherentExpiringMap<K, V> implements ExpireMap<K, V> {
+    private final ExpireMap<K, V> delegate;
+    private final InvalidationTransport<K> transport;
+    private final Set<K> pending = ConcurrentHashMap.newKeySet();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final Thread flusher;
+
+    public CoherentExpiringMap(ExpireMap<K, V> delegate, InvalidationTransport<K> transport, long flushIntervalMs) {
+        if (flushIntervalMs <= 0)
+            throw new IllegalArgumentException("Flush interval must be a positive value");
+
+        this.delegate = delegate;
+        this.transport = transport;
+        transport.subscribe(keys -> keys.forEach(delegate::remove));
+        this.flusher = startFlusher(flushIntervalMs);
+    }
+
+    private Thread startFlusher(long flushIntervalMs) {
+        Thread thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(flushIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                flush();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public void put(K key, V value, long timeoutMs) {
+        delegate.put(key, value, timeoutMs);
+        pending.add(key);
+    }
+
+    @Override
+    public V get(K key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public void remove(K key) {
+        delegate.remove(key);
+        pending.add(key);
+    }
+
+    /**
+     * Publish the keys invalidated since the last flush.
+     */
+    public synchronized void flush() {
+        List<K> batch = new ArrayList<>();
+        for (K key : pending) {
+            //a write racing with this removal has already reached the delegate, so publishing after it is still correct
+            pending.remove(key);
+            batch.add(key);
+        }
+        if (batch.isEmpty())
+            return;
+
+        try {
+            transport.publish(batch);
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            pending.addAll(batch);
+        }
+    }
+
+    /**
+     * Number of flushes whose batch the transport failed to publish.
+     */
+    public long failedFlushes() {
+        return failedFlushes.sum();
+    }
+
+    /**
+     * Stop the flush thread, publish anything outstanding and close the transport.
+     */
+    public void close() {
+        flusher.interrupt();
+        flush();
+        transport.close();
+    }
+}
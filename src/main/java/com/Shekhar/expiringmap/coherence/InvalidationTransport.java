@@ -0,0 +1,34 @@
+package com.shekhar.expiringmap.coherence;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Carries key invalidations between the nodes of a cluster.
+ * <p>
+ * Delivery is best effort: a lost invalidation only means a peer keeps
+ * serving its copy until the entry's own timeout removes it.
+ *
+ * @param <K> the type of keys being invalidated
+ */
+public interface InvalidationTransport<K> {
+
+    /**
+     * Send a batch of invalidated keys to every other node.
+     *
+     * @param keys
+     */
+    void publish(Collection<K> keys);
+
+    /**
+     * Register the listener that receives batches published by other nodes.
+     *
+     * @param listener
+     */
+    void subscribe(Consumer<Collection<K>> listener);
+
+    /**
+     * Stop sending and receiving invalidations.
+     */
+    void close();
+}
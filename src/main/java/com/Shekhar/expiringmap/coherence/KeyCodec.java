@@ -0,0 +1,40 @@
+package com.shekhar.expiringmap.coherence;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Converts keys to and from bytes for transports that leave the process.
+ *
+ * @param <K> the type of keys being converted
+ */
+public interface KeyCodec<K> {
+    public KeyCodec<String> STRING = new KeyCodec<String>() {
+        @Override
+        public byte[] encode(String key) {
+            return key.getBytes(UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, UTF_8);
+        }
+    };
+
+    public KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+        @Override
+        public byte[] encode(Integer key) {
+            return ByteBuffer.allocate(4).putInt(key).array();
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    byte[] encode(K key);
+
+    K decode(byte[] bytes);
+}
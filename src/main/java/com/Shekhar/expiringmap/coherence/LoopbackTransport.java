@@ -0,0 +1,70 @@
+package com.shekhar.expiringmap.coherence;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * In-process transport. Every transport obtained through {@link #join()}
+ * shares a bus with this one, and batches are handed to the other members
+ * on the publishing thread. A member whose listener fails loses that batch,
+ * as a peer does a dropped datagram, without keeping it from the others.
+ *
+ * @param <K> the type of keys being invalidated
+ */
+public class LoopbackTransport<K> implements InvalidationTransport<K> {
+    private final List<LoopbackTransport<K>> bus;
+    private final LongAdder droppedBatches = new LongAdder();
+    private volatile Consumer<Collection<K>> listener = keys -> { };
+
+    public LoopbackTransport() {
+        this(new CopyOnWriteArrayList<>());
+    }
+
+    private LoopbackTransport(List<LoopbackTransport<K>> bus) {
+        this.bus = bus;
+        bus.add(this);
+    }
+
+    /**
+     * Create another member on the same bus.
+     */
+    public LoopbackTransport<K> join() {
+        return new LoopbackTransport<>(bus);
+    }
+
+    /**
+     * Batches handed to this member but discarded because its listener failed.
+     */
+    public long droppedBatches() {
+        return droppedBatches.sum();
+    }
+
+    @Override
+    public void publish(Collection<K> keys) {
+        for (LoopbackTransport<K> member : bus) {
+            if (member != this)
+                member.deliver(keys);
+        }
+    }
+
+    private void deliver(Collection<K> keys) {
+        try {
+            listener.accept(keys);
+        } catch (RuntimeException e) {
+            droppedBatches.increment();
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Collection<K>> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        bus.remove(this);
+    }
+}
@@ -0,0 +1,166 @@
+package com.shekhar.expiringmap.coherence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Datagram transport bound to the loopback interface, so several nodes
+ * can be exercised on one machine.
+ * <p>
+ * Each batch is split into datagrams small enough to avoid fragmentation.
+ * A datagram holds a key count followed by length prefixed encoded keys.
+ * Lost datagrams are not retried. Keys too large for a datagram are
+ * skipped, and datagrams that cannot be decoded or applied are dropped,
+ * so one bad key or packet never stops later invalidations.
+ *
+ * @param <K> the type of keys being invalidated
+ */
+public class UdpTransport<K> implements InvalidationTransport<K> {
+    static final int MAX_PAYLOAD = 1400;
+
+    private final DatagramSocket socket;
+    private final KeyCodec<K> codec;
+    private final List<SocketAddress> peers = new CopyOnWriteArrayList<>();
+    private final LongAdder skippedKeys = new LongAdder();
+    private final LongAdder droppedDatagrams = new LongAdder();
+    private volatile Consumer<Collection<K>> listener = keys -> { };
+
+    public UdpTransport(KeyCodec<K> codec) throws IOException {
+        this(0, codec);
+    }
+
+    public UdpTransport(int port, KeyCodec<K> codec) throws IOException {
+        this.codec = codec;
+        this.socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        startReceiver();
+    }
+
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) socket.getLocalSocketAddress();
+    }
+
+    public void addPeer(SocketAddress peer) {
+        peers.add(peer);
+    }
+
+    /**
+     * Keys not published because their encoding does not fit in a datagram.
+     */
+    public long skippedKeys() {
+        return skippedKeys.sum();
+    }
+
+    /**
+     * Datagrams received but discarded because they were malformed or the listener failed.
+     */
+    public long droppedDatagrams() {
+        return droppedDatagrams.sum();
+    }
+
+    private void startReceiver() {
+        Thread thread = new Thread(() -> {
+            byte[] buffer = new byte[MAX_PAYLOAD];
+            while (!socket.isClosed()) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    socket.receive(packet);
+                } catch (IOException e) {
+                    continue; //the loop exits once the socket is closed
+                }
+                try {
+                    listener.accept(decode(ByteBuffer.wrap(packet.getData(), 0, packet.getLength())));
+                } catch (RuntimeException e) {
+                    droppedDatagrams.increment();
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void publish(Collection<K> keys) {
+        for (ByteBuffer datagram : encode(keys)) {
+            for (SocketAddress peer : peers) {
+                try {
+                    socket.send(new DatagramPacket(datagram.array(), datagram.limit(), peer));
+                } catch (IOException e) {
+                    if (socket.isClosed())
+                        return;
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private List<ByteBuffer> encode(Collection<K> keys) {
+        List<ByteBuffer> datagrams = new ArrayList<>();
+        ByteBuffer current = null;
+        for (K key : keys) {
+            byte[] bytes = codec.encode(key);
+            if (4 + 4 + bytes.length > MAX_PAYLOAD) {
+                skippedKeys.increment();
+                continue;
+            }
+
+            if (current == null || current.remaining() < 4 + bytes.length) {
+                current = newDatagram();
+                datagrams.add(current);
+            }
+            current.putInt(0, current.getInt(0) + 1);
+            current.putInt(bytes.length).put(bytes);
+        }
+        for (ByteBuffer datagram : datagrams)
+            datagram.flip();
+        return datagrams;
+    }
+
+    private ByteBuffer newDatagram() {
+        ByteBuffer datagram = ByteBuffer.allocate(MAX_PAYLOAD);
+        datagram.putInt(0);
+        return datagram;
+    }
+
+    private List<K> decode(ByteBuffer datagram) {
+        if (datagram.remaining() < 4)
+            throw new IllegalArgumentException("Datagram too short");
+        int count = datagram.getInt();
+        if (count < 0 || count > datagram.remaining() / 4)
+            throw new IllegalArgumentException("Invalid key count: " + count);
+
+        List<K> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (datagram.remaining() < 4)
+                throw new IllegalArgumentException("Truncated datagram");
+            int length = datagram.getInt();
+            if (length < 0 || length > datagram.remaining())
+                throw new IllegalArgumentException("Invalid key length: " + length);
+            byte[] bytes = new byte[length];
+            datagram.get(bytes);
+            keys.add(codec.decode(bytes));
+        }
+        return keys;
+    }
+
+    @Override
+    public void subscribe(Consumer<Collection<K>> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+}
@@ -0,0 +1,19 @@
+package com.shekhar.expiringmap.util;
+
+/**
+ * Expiry entry for a negative cache entry. It only expires the key while the
+ * key still maps to the expected sentinel, so a value loaded in the meantime
+ * outlives the negative timeout.
+ */
+public class NegativeExpiryEntry<K> extends ExpiryEntry<K> {
+    private Object expected;
+
+    public NegativeExpiryEntry(long expiry, K key, Object expected) {
+        super(expiry, key);
+        this.expected = expected;
+    }
+
+    public Object expected() {
+        return expected;
+    }
+}
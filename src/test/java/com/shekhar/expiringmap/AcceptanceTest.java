@@ -1,5 +1,7 @@
 package com.shekhar.expiringmap;
 
+import com.shekhar.expiringmap.sim.SimulatedClock;
+import com.shekhar.expiringmap.util.WaitService;
 import org.junit.Test;
 
 import java.util.concurrent.TimeUnit;
@@ -29,4 +31,27 @@ public class AcceptanceTest {
         assertThat(map.size(), is(0));
     }
 
+    @Test
+    public void shouldExpireBatchOfValuesInAlotedVirtualTime() {
+        SimulatedClock clock = new SimulatedClock();
+        ExpiringMap<Integer, String> map = new ExpiringMap<>(clock, WaitService.DEFAULT, false);
+
+        int expiry = 1000;
+        int numEntries = 100;
+
+        for (int i = 0; i < numEntries; i++) {
+            map.put(i, "value" + i, expiry);
+        }
+
+        assertThat(map.size(), is(numEntries));
+
+        clock.advanceBy(MILLISECONDS.toNanos(expiry - 1));
+        map.expireDue();
+        assertThat(map.size(), is(numEntries));
+
+        clock.advanceBy(MILLISECONDS.toNanos(1));
+        map.expireDue();
+        assertThat(map.size(), is(0));
+    }
+
 }
@@ -0,0 +1,300 @@
+package com.shekhar.expiringmap;
+
+import com.shekhar.expiringmap.util.WaitService;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class CompactExpiringMapTest {
+    private long now;
+
+    private CompactExpiringMap<String, String> newMap() {
+        return new CompactExpiringMap<>(() -> now, false);
+    }
+
+    @Test
+    public void shouldPutGetAndRemoveValues() {
+        //Given
+        CompactExpiringMap<String, String> map = newMap();
+
+        //When
+        map.put("key1", "value1", HOURS.toMillis(1));
+        map.put("key2", "value2", HOURS.toMillis(1));
+        map.remove("key2");
+
+        //Then
+        assertThat(map.get("key1"), is("value1"));
+        assertThat(map.get("key2"), is(nullValue()));
+        assertThat(map.size(), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionForNegativeTimeouts() {
+        newMap().put("k", "v", -5);
+    }
+
+    @Test
+    public void shouldNotReturnEntriesOnceTheirTimeoutIsReached() {
+        //Given
+        CompactExpiringMap<String, String> map = newMap();
+        map.put("key1", "value1", 10);
+
+        //When
+        now += MILLISECONDS.toNanos(10) - 1;
+
+        //Then
+        assertThat(map.get("key1"), is("value1"));
+
+        now += 1;
+        assertThat(map.get("key1"), is(nullValue()));
+        assertThat(map.size(), is(0));
+    }
+
+    @Test
+    public void shouldNeverExpireBeforeTheTimeoutWhenPutBetweenTicks() {
+        //Given
+        CompactExpiringMap<String, String> map = newMap();
+        now = 1;
+        map.put("key1", "value1", 1);
+
+        //When
+        now = MILLISECONDS.toNanos(1);
+
+        //Then
+        assertThat(map.get("key1"), is("value1"));
+    }
+
+    @Test
+    public void shouldExpireOverwrittenKeyWithItsLatestTimeout() {
+        //Given
+        CompactExpiringMap<String, String> map = newMap();
+        map.put("key1", "value1", 5);
+        map.put("key1", "value2", 25);
+
+        //When
+        now += MILLISECONDS.toNanos(10);
+        map.expireDue();
+
+        //Then
+        assertThat(map.get("key1"), is("value2"));
+    }
+
+    @Test
+    public void shouldSweepExpiredEntries() {
+        //Given
+        CompactExpiringMap<Integer, String> map = new CompactExpiringMap<>(() -> now, false);
+        int numEntries = 10000;
+        for (int i = 0; i < numEntries; i++)
+            map.put(i, "value" + i, i % 2 == 0 ? 5 : 25);
+
+        //When
+        now += MILLISECONDS.toNanos(10);
+        int expired = map.expireDue();
+
+        //Then
+        assertThat(expired, is(numEntries / 2));
+        assertThat(map.size(), is(numEntries / 2));
+        assertThat(map.get(1), is("value1"));
+    }
+
+    @Test
+    public void shouldSupportTimeoutsOfLargePositiveLong() {
+        //Given
+        CompactExpiringMap<String, String> map = newMap();
+
+        //When
+        map.put("k", "v", Long.MAX_VALUE);
+        now += DAYS.toNanos(365);
+        map.expireDue();
+
+        //Then
+        assertThat(map.get("k"), is("v"));
+    }
+
+    @Test
+    public void shouldKeepDeadlinesAcrossEpochRebase() {
+        //Given one deadline inside the 32 bit range and one beyond it
+        CompactExpiringMap<String, String> map = newMap();
+        map.put("near", "value1", DAYS.toMillis(20));
+        map.put("far", "value2", DAYS.toMillis(40));
+
+        //When the clock passes the rebase point
+        now += DAYS.toNanos(19);
+        map.expireDue();
+
+        //Then
+        assertThat(map.get("near"), is("value1"));
+        assertThat(map.get("far"), is("value2"));
+
+        now += DAYS.toNanos(1);
+        assertThat(map.get("near"), is(nullValue()));
+        assertThat(map.get("far"), is("value2"));
+
+        now += DAYS.toNanos(20) - 1;
+        map.expireDue();
+        assertThat(map.get("far"), is("value2"));
+
+        now += 1;
+        assertThat(map.get("far"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldKeepFarDeadlinesWhenOnlyReadingAcrossEpochRebase() {
+        //Given no sweeps and no further puts
+        CompactExpiringMap<String, String> map = newMap();
+        map.put("far", "value", DAYS.toMillis(40));
+
+        //When the clock passes the end of the 32 bit range
+        now += DAYS.toNanos(30);
+
+        //Then
+        assertThat(map.get("far"), is("value"));
+
+        now += DAYS.toNanos(10);
+        assertThat(map.get("far"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldSweepTheWholeTableInAFixedNumberOfSteps() {
+        //Given a table much larger than one sweep step
+        CompactExpiringMap<Integer, String> map = new CompactExpiringMap<>(() -> now, false);
+        int numEntries = 400000;
+        for (int i = 0; i < numEntries; i++)
+            map.put(i, "value", 5);
+        now += MILLISECONDS.toNanos(5);
+
+        //When
+        int firstStep = map.sweepStep();
+        int steps = 1;
+        while (map.size() > 0) {
+            map.sweepStep();
+            if (steps++ > 1000)
+                throw new RuntimeException("Sweep did not finish: " + map.size());
+        }
+
+        //Then
+        assertTrue(firstStep > 0 && firstStep < numEntries / 5);
+        assertTrue(steps <= CompactExpiringMap.SWEEP_PASS_STEPS);
+    }
+
+    @Test
+    public void shouldKeepPeakFootprintWellBelowExpiringMapWhileEntriesExpire() {
+        //Given one minute timeouts on keys that are never read again, leaving a live set
+        //that fills the hash tables about as much as ten million entries would
+        CompactExpiringMap<Integer, String> compact = new CompactExpiringMap<>(() -> now, false);
+        ExpiringMap<Integer, String> standard = new ExpiringMap<>(() -> now, WaitService.DEFAULT, false);
+        long compactPeak = 0;
+        long standardPeak = 0;
+        int key = 0;
+
+        //When two minutes of writes are swept at the background thread's pace
+        for (int wakeUp = 0; wakeUp < 1200; wakeUp++) {
+            for (int i = 0; i < 300; i++, key++) {
+                compact.put(key, "value", MINUTES.toMillis(1));
+                standard.put(key, "value", MINUTES.toMillis(1));
+            }
+            now += MILLISECONDS.toNanos(CompactExpiringMap.SWEEP_INTERVAL_MS);
+            compact.sweepStep();
+            standard.expireDue();
+            compactPeak = Math.max(compactPeak, compact.memoryFootprint());
+            standardPeak = Math.max(standardPeak, standard.memoryFootprint());
+        }
+
+        //Then
+        assertTrue(compactPeak <= standardPeak * 0.6);
+    }
+
+    @Test
+    public void shouldOnlySweepOnceTheIntervalHasPassedOnTheClock() throws InterruptedException {
+        //Given a sweeper thread and a clock that has barely moved
+        CompactExpiringMap<String, String> map = new CompactExpiringMap<>(() -> now, true);
+        map.put("key1", "value1", 1);
+        now += MILLISECONDS.toNanos(1);
+
+        //When
+        Thread.sleep(3 * CompactExpiringMap.SWEEP_INTERVAL_MS);
+
+        //Then
+        assertThat(map.isResident("key1"), is(true));
+
+        now += MILLISECONDS.toNanos(CompactExpiringMap.SWEEP_INTERVAL_MS);
+        int count = 0;
+        while (map.isResident("key1")) {
+            Thread.sleep(1);
+            if (count++ > 2000)
+                throw new RuntimeException("Key took more than 2s to be swept");
+        }
+    }
+
+    @Test
+    public void shouldUseAtLeastFortyPercentLessMemoryThanExpiringMap() {
+        //Given
+        CompactExpiringMap<Integer, String> compact = new CompactExpiringMap<>(() -> now, false);
+        ExpiringMap<Integer, String> standard = new ExpiringMap<>(() -> now, WaitService.DEFAULT, false);
+
+        //When
+        for (int i = 0; i < 90000; i++) {
+            compact.put(i, "value", HOURS.toMillis(1));
+            standard.put(i, "value", HOURS.toMillis(1));
+        }
+
+        //Then
+        assertTrue(compact.memoryFootprint() <= standard.memoryFootprint() * 0.6);
+    }
+
+    @Test
+    public void shouldHideNegativeEntriesAndCountThemSeparately() {
+        //Given
+        CompactExpiringMap<String, String> map = newMap();
+        map.put("key1", "value1", HOURS.toMillis(1));
+        map.putNegative("key2");
+
+        //When
+        String value = map.get("key2");
+
+        //Then
+        assertThat(value, is(nullValue()));
+        assertThat(map.isNegative("key2"), is(true));
+        assertThat(map.isNegative("key1"), is(false));
+        assertThat(map.stats().negativeHits(), is(1L));
+        assertThat(map.stats().misses(), is(0L));
+    }
+
+    @Test
+    public void shouldSweepNegativeEntriesAfterTheNegativeTimeout() {
+        //Given
+        CompactExpiringMap<String, String> map = newMap();
+        map.setNegativeTimeout(5);
+        map.putNegative("key1");
+
+        //When
+        now += MILLISECONDS.toNanos(5);
+        map.expireDue();
+
+        //Then
+        assertThat(map.isResident("key1"), is(false));
+    }
+
+    @Test
+    public void shouldKeepValueThatReplacedNegativeEntryPastTheNegativeTimeout() {
+        //Given
+        CompactExpiringMap<String, String> map = newMap();
+        map.putNegative("key1");
+
+        //When the key is loaded and the negative timeout then passes
+        map.put("key1", "value1", HOURS.toMillis(1));
+        now += MILLISECONDS.toNanos(ExpiringMap.DEFAULT_NEGATIVE_TIMEOUT_MS);
+        map.expireDue();
+
+        //Then
+        assertThat(map.isNegative("key1"), is(false));
+        assertThat(map.get("key1"), is("value1"));
+    }
+}
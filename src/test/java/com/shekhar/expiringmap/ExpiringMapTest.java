@@ -7,11 +7,22 @@ import static org.junit.Assert.*;
 import static org.hamcrest.core.Is.is;
 
 import com.shekhar.expiringmap.util.CountDownWaitService;
+import com.shekhar.expiringmap.util.WaitService;
 import org.junit.Test;
 
 import java.util.concurrent.CountDownLatch;
 
 public class ExpiringMapTest {
+    private static final WaitService SPINNING = new WaitService() {
+        @Override
+        public void doWait(long ms, int ns) {
+        }
+
+        @Override
+        public void doNotify() {
+        }
+    };
+
     private long now;
 
     @Test
@@ -242,6 +253,108 @@ public class ExpiringMapTest {
         assertThat(map.get("key2"), is(nullValue()));
     }
 
+    @Test
+    public void shouldExpireDueEntriesOnCallersThread() {
+        //Given
+        ExpiringMap<String, String> map = new ExpiringMap<>(() -> now, WaitService.DEFAULT, false);
+        now = 0;
+        map.put("key1", "value1", 5);
+        map.put("key2", "value2", 10);
+
+        //When
+        now += MILLISECONDS.toNanos(5);
+        int expired = map.expireDue();
+
+        //Then
+        assertThat(expired, is(1));
+        assertThat(map.get("key1"), is(nullValue()));
+        assertThat(map.get("key2"), is("value2"));
+        assertThat(map.scheduled(), is(1));
+    }
+
+    @Test
+    public void shouldKeepExpiryThreadAliveWhileExpiringDueEntriesOnCallersThread() throws InterruptedException {
+        //Given an expiry thread that keeps re-checking a far off head
+        ExpiringMap<String, String> map = new ExpiringMap<>(() -> now, SPINNING);
+        now = 0;
+        map.put("key1", "value1", HOURS.toMillis(1));
+
+        //When
+        for (int i = 0; i < 200_000; i++)
+            map.expireDue();
+        now += HOURS.toNanos(1);
+
+        //Then the expiry thread still removes the entry
+        waitForKeyToBeRemoved("key1", map);
+    }
+
+    @Test
+    public void shouldNotReturnNegativeEntriesAsValues() {
+        //Given
+        ExpiringMap<String, String> map = new ExpiringMap<>(() -> now, WaitService.DEFAULT, false);
+
+        //When
+        map.putNegative("key1");
+
+        //Then
+        assertThat(map.get("key1"), is(nullValue()));
+        assertThat(map.isNegative("key1"), is(true));
+        assertThat(map.isNegative("key2"), is(false));
+    }
+
+    @Test
+    public void shouldExpireNegativeEntriesWithTheNegativeTimeout() {
+        //Given
+        ExpiringMap<String, String> map = new ExpiringMap<>(() -> now, WaitService.DEFAULT, false);
+        map.setNegativeTimeout(5);
+        map.putNegative("key1");
+
+        //When
+        now += MILLISECONDS.toNanos(5);
+        map.expireDue();
+
+        //Then
+        assertThat(map.isNegative("key1"), is(false));
+        assertThat(map.size(), is(0));
+    }
+
+    @Test
+    public void shouldKeepValueThatReplacedNegativeEntryPastTheNegativeTimeout() {
+        //Given
+        ExpiringMap<String, String> map = new ExpiringMap<>(() -> now, WaitService.DEFAULT, false);
+        map.putNegative("key1");
+
+        //When the key is loaded and the negative timeout then passes
+        map.put("key1", "value1", HOURS.toMillis(1));
+        now += MILLISECONDS.toNanos(ExpiringMap.DEFAULT_NEGATIVE_TIMEOUT_MS);
+        map.expireDue();
+
+        //Then
+        assertThat(map.isNegative("key1"), is(false));
+        assertThat(map.get("key1"), is("value1"));
+    }
+
+    @Test
+    public void shouldCountNegativeHitsSeparately() {
+        //Given
+        ExpiringMap<String, String> map = new ExpiringMap<>(() -> now, WaitService.DEFAULT, false);
+        map.put("key1", "value1", HOURS.toMillis(1));
+        map.putNegative("key2");
+
+        //When
+        map.get("key1");
+        map.get("key2");
+        map.get("key2");
+        map.get("key3");
+
+        //Then
+        CacheStats stats = map.stats();
+        assertThat(stats.hits(), is(1L));
+        assertThat(stats.negativeHits(), is(2L));
+        assertThat(stats.misses(), is(1L));
+        assertThat(stats.negativePuts(), is(1L));
+    }
+
     private void waitForKeyToBeRemoved(String key, ExpiringMap<String, String> map) throws InterruptedException {
         int count = 0;
         while (map.get(key)!=null) {
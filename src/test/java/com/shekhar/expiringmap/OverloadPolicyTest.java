@@ -0,0 +1,256 @@
+package com.shekhar.expiringmap;
+
+import com.shekhar.expiringmap.util.WaitService;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OverloadPolicyTest {
+    private long now;
+
+    //no expiry thread, so the queue only drains through the overload policy
+    private ExpiringMap<Integer, String> newMap(OverloadPolicy policy) {
+        ExpiringMap<Integer, String> map = new ExpiringMap<>(() -> now, WaitService.DEFAULT, false);
+        map.setOverloadPolicy(policy);
+        return map;
+    }
+
+    private void fill(ExpiringMap<Integer, String> map, int numEntries, long timeoutMs) {
+        for (int i = 0; i < numEntries; i++)
+            map.put(i, "value" + i, timeoutMs);
+    }
+
+    @Test
+    public void shouldExpireDueEntriesOnWriterThreadWhenLagging() {
+        //Given
+        ExpiringMap<Integer, String> map = newMap(OverloadPolicy.callerRuns(Integer.MAX_VALUE, 10));
+        fill(map, 100, 1);
+
+        //When
+        now += MILLISECONDS.toNanos(20);
+        map.put(1000, "value", HOURS.toMillis(1));
+
+        //Then
+        OverloadStats stats = map.overloadStats();
+        assertThat(stats.overloads(), is(1L));
+        assertThat(stats.inlineExpiries(), is(64L));
+        assertThat(map.size(), is(100 - 64 + 1));
+    }
+
+    @Test
+    public void shouldDrainWithExtraReclaimerWhenLagging() throws InterruptedException {
+        //Given
+        ExpiringMap<Integer, String> map = newMap(OverloadPolicy.extraReclaimer(Integer.MAX_VALUE, 10));
+        fill(map, 1000, 1);
+
+        //When
+        now += MILLISECONDS.toNanos(20);
+        map.put(1000, "value", HOURS.toMillis(1));
+
+        //Then
+        int count = 0;
+        while (map.size() > 1) {
+            Thread.sleep(1);
+            if (count++ > 2000)
+                throw new RuntimeException("Reclaimer did not drain the queue: " + map.size());
+        }
+        OverloadStats stats = map.overloadStats();
+        assertThat(stats.reclaimersStarted(), is(1L));
+        assertThat(stats.reclaimerExpiries(), is(1000L));
+        assertThat(stats.expiryLagNanos(), is(0L));
+    }
+
+    @Test
+    public void shouldRejectPutsWhenScheduleIsTooDeep() {
+        //Given
+        ExpiringMap<Integer, String> map = newMap(OverloadPolicy.reject(10, Long.MAX_VALUE));
+        fill(map, 10, HOURS.toMillis(1));
+
+        //When
+        try {
+            map.put(10, "value", HOURS.toMillis(1));
+            fail("Expected put to be rejected");
+        } catch (IllegalStateException expected) {
+        }
+
+        //Then
+        assertThat(map.get(10), is(nullValue()));
+        assertThat(map.overloadStats().rejectedPuts(), is(1L));
+        assertThat(map.overloadStats().scheduled(), is(10));
+    }
+
+    @Test
+    public void shouldAcceptPutsAgainOnceOverloadClears() {
+        //Given
+        ExpiringMap<Integer, String> map = newMap(OverloadPolicy.reject(10, Long.MAX_VALUE));
+        fill(map, 10, 1);
+
+        //When
+        now += MILLISECONDS.toNanos(1);
+        map.expireDue();
+        map.put(10, "value", HOURS.toMillis(1));
+
+        //Then
+        assertThat(map.get(10), is("value"));
+        assertThat(map.overloadStats().rejectedPuts(), is(0L));
+    }
+
+    @Test
+    public void shouldThrottlePutsForAtMostTheMaximumWaitOnTheClock() {
+        //Given waits that only move the clock
+        ExpiringMap<Integer, String> map = new ExpiringMap<>(() -> now, new AdvancingWaitService(null), false);
+        map.setOverloadPolicy(OverloadPolicy.throttle(10, Long.MAX_VALUE, 20));
+        fill(map, 10, HOURS.toMillis(1));
+
+        //When
+        map.put(10, "value", HOURS.toMillis(1));
+
+        //Then
+        assertThat(map.get(10), is("value"));
+        assertThat(map.overloadStats().throttledPuts(), is(1L));
+        assertThat(map.overloadStats().throttledNanos(), is(MILLISECONDS.toNanos(20)));
+    }
+
+    @Test
+    public void shouldStopThrottlingOnceTheOverloadClears() {
+        //Given waits that move the clock and then drain what is due
+        AdvancingWaitService waitService = new AdvancingWaitService(null);
+        ExpiringMap<Integer, String> map = new ExpiringMap<>(() -> now, waitService, false);
+        waitService.map = map;
+        map.setOverloadPolicy(OverloadPolicy.throttle(10, Long.MAX_VALUE, 20));
+        fill(map, 10, 5);
+
+        //When
+        map.put(10, "value", HOURS.toMillis(1));
+
+        //Then
+        assertThat(map.overloadStats().throttledNanos(), is(MILLISECONDS.toNanos(5)));
+        assertThat(map.overloadStats().scheduled(), is(1));
+    }
+
+    @Test
+    public void shouldBoundDepthOnlyByRejecting() {
+        //Given long timeouts, so nothing is ever due
+        ExpiringMap<Integer, String> callerRuns = newMap(OverloadPolicy.callerRuns(10, Long.MAX_VALUE));
+        ExpiringMap<Integer, String> reject = newMap(OverloadPolicy.reject(10, Long.MAX_VALUE));
+
+        //When
+        fill(callerRuns, 1000, HOURS.toMillis(1));
+        for (int i = 0; i < 1000; i++) {
+            try {
+                reject.put(i, "value" + i, HOURS.toMillis(1));
+            } catch (IllegalStateException expected) {
+            }
+        }
+
+        //Then
+        assertThat(callerRuns.overloadStats().scheduled(), is(1000));
+        assertThat(callerRuns.overloadStats().inlineExpiries(), is(0L));
+        assertThat(reject.overloadStats().scheduled(), is(10));
+        assertThat(reject.overloadStats().rejectedPuts(), is(990L));
+    }
+
+    @Test
+    public void shouldNotRestartReclaimerThatFoundNothingDueUntilCooldownPasses() throws InterruptedException {
+        //Given the queue is too deep but nothing is due
+        ExpiringMap<Integer, String> map = newMap(OverloadPolicy.extraReclaimer(10, Long.MAX_VALUE));
+        fill(map, 10000, 1000);
+
+        //Then a single reclaimer ran and found nothing to do
+        OverloadStats stats = map.overloadStats();
+        assertThat(stats.reclaimersStarted(), is(1L));
+        assertThat(stats.reclaimerExpiries(), is(0L));
+        assertThat(stats.scheduled(), is(10000));
+
+        //When the entries become due and the cool-down has passed
+        now += MILLISECONDS.toNanos(1000);
+        map.put(10000, "value", HOURS.toMillis(1));
+
+        //Then a new reclaimer drains them
+        int count = 0;
+        while (map.size() > 1) {
+            Thread.sleep(1);
+            if (count++ > 2000)
+                throw new RuntimeException("Reclaimer did not drain the queue: " + map.size());
+        }
+        assertThat(map.overloadStats().reclaimersStarted(), is(2L));
+    }
+
+    @Test
+    public void shouldKeepExpiryThreadAliveWhileWritersExpireInline() throws InterruptedException {
+        //Given a live expiry thread that keeps re-checking a far off head
+        ExpiringMap<Integer, String> map = new ExpiringMap<>(() -> now, new SpinningWaitService());
+        map.setOverloadPolicy(OverloadPolicy.callerRuns(1, Long.MAX_VALUE));
+        map.put(0, "value", HOURS.toMillis(1));
+
+        //When writers keep expiring due entries and offering the far head back
+        for (int i = 0; i < 1_000_000; i++)
+            map.put(1, "value", 0);
+        now += HOURS.toNanos(1);
+
+        //Then the expiry thread still removes the far entry
+        int count = 0;
+        while (map.isResident(0)) {
+            Thread.sleep(1);
+            if (count++ > 2000)
+                throw new RuntimeException("Expiry thread did not remove the entry");
+        }
+        assertTrue(map.overloadStats().inlineExpiries() > 0);
+    }
+
+    @Test
+    public void shouldLetQueueGrowWithoutPolicy() {
+        //Given
+        ExpiringMap<Integer, String> map = newMap(null);
+
+        //When
+        fill(map, 1000, 1);
+        now += MILLISECONDS.toNanos(20);
+        map.put(1000, "value", HOURS.toMillis(1));
+
+        //Then
+        assertThat(map.overloadStats().scheduled(), is(1001));
+        assertThat(map.overloadStats().expiryLagNanos(), is(MILLISECONDS.toNanos(19)));
+        assertThat(map.overloadStats().overloads(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequirePositiveThresholds() {
+        OverloadPolicy.reject(0, 10);
+    }
+
+    private class AdvancingWaitService implements WaitService {
+        private ExpiringMap<Integer, String> map;
+
+        AdvancingWaitService(ExpiringMap<Integer, String> map) {
+            this.map = map;
+        }
+
+        @Override
+        public void doWait(long ms, int ns) {
+            now += MILLISECONDS.toNanos(ms) + ns;
+            if (map != null)
+                map.expireDue();
+        }
+
+        @Override
+        public void doNotify() {
+        }
+    }
+
+    private class SpinningWaitService implements WaitService {
+        @Override
+        public void doWait(long ms, int ns) {
+        }
+
+        @Override
+        public void doNotify() {
+        }
+    }
+}
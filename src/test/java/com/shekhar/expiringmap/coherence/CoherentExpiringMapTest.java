@@ -0,0 +1,340 @@
+package com.shekhar.expiringmap.coherence;
+
+import com.shekhar.expiringmap.ExpireMap;
+import com.shekhar.expiringmap.ExpiringMap;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class CoherentExpiringMapTest {
+    private static final long NEVER_FLUSH = HOURS.toMillis(1);
+
+    @Test
+    public void shouldInvalidatePeerOnRemove() {
+        //Given
+        LoopbackTransport<String> transport = new LoopbackTransport<>();
+        CoherentExpiringMap<String, String> node1 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport, NEVER_FLUSH);
+        CoherentExpiringMap<String, String> node2 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport.join(), NEVER_FLUSH);
+        node1.put("key1", "value1", HOURS.toMillis(1));
+        node2.put("key1", "value1", HOURS.toMillis(1));
+        node2.flush();
+
+        //When
+        node1.remove("key1");
+        node1.flush();
+
+        //Then
+        assertThat(node2.get("key1"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldInvalidatePeerOnPutButKeepLocalValue() {
+        //Given
+        LoopbackTransport<String> transport = new LoopbackTransport<>();
+        CoherentExpiringMap<String, String> node1 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport, NEVER_FLUSH);
+        CoherentExpiringMap<String, String> node2 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport.join(), NEVER_FLUSH);
+        node2.put("key1", "old", HOURS.toMillis(1));
+        node2.flush();
+
+        //When
+        node1.put("key1", "new", HOURS.toMillis(1));
+        node1.flush();
+
+        //Then
+        assertThat(node1.get("key1"), is("new"));
+        assertThat(node2.get("key1"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldCoalesceWritesWithinAFlushInterval() {
+        //Given
+        RecordingTransport transport = new RecordingTransport();
+        CoherentExpiringMap<String, String> node = new CoherentExpiringMap<>(new ExpiringMap<>(), transport, NEVER_FLUSH);
+
+        //When
+        node.put("key1", "value1", HOURS.toMillis(1));
+        node.put("key1", "value2", HOURS.toMillis(1));
+        node.remove("key1");
+        node.put("key2", "value1", HOURS.toMillis(1));
+        node.flush();
+        node.flush();
+
+        //Then
+        assertThat(transport.batches.size(), is(1));
+        assertThat(transport.batches.get(0).size(), is(2));
+    }
+
+    @Test
+    public void shouldNotRepublishReceivedInvalidations() {
+        //Given
+        LoopbackTransport<String> transport = new LoopbackTransport<>();
+        RecordingTransport recorder = new RecordingTransport();
+        CoherentExpiringMap<String, String> node1 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport, NEVER_FLUSH);
+        CoherentExpiringMap<String, String> node2 = new CoherentExpiringMap<>(new ExpiringMap<>(), recorder, NEVER_FLUSH);
+        transport.join().subscribe(keys -> recorder.listener.accept(keys));
+
+        //When
+        node1.remove("key1");
+        node1.flush();
+        node2.flush();
+
+        //Then
+        assertThat(recorder.batches.size(), is(0));
+    }
+
+    @Test
+    public void shouldDeliverToOtherMembersWhenOneListenerFails() {
+        //Given a bus where the first peer's local remove fails
+        LoopbackTransport<String> transport = new LoopbackTransport<>();
+        LoopbackTransport<String> transport2 = transport.join();
+        CoherentExpiringMap<String, String> node1 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport, NEVER_FLUSH);
+        CoherentExpiringMap<String, String> node2 = new CoherentExpiringMap<>(new FailOnceMap(new ExpiringMap<>()), transport2, NEVER_FLUSH);
+        CoherentExpiringMap<String, String> node3 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport.join(), NEVER_FLUSH);
+        node2.put("key1", "old", HOURS.toMillis(1));
+        node3.put("key1", "old", HOURS.toMillis(1));
+
+        //When
+        node1.remove("key1");
+        node1.flush();
+
+        //Then
+        assertThat(node3.get("key1"), is(nullValue()));
+        assertThat(node2.get("key1"), is("old"));
+        assertThat(transport2.droppedBatches(), is(1L));
+        assertThat(node1.failedFlushes(), is(0L));
+    }
+
+    @Test
+    public void shouldInvalidatePeerOverUdp() throws Exception {
+        //Given
+        UdpTransport<String> transport1 = new UdpTransport<>(KeyCodec.STRING);
+        UdpTransport<String> transport2 = new UdpTransport<>(KeyCodec.STRING);
+        transport1.addPeer(transport2.localAddress());
+        transport2.addPeer(transport1.localAddress());
+        CoherentExpiringMap<String, String> node1 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport1, NEVER_FLUSH);
+        CoherentExpiringMap<String, String> node2 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport2, NEVER_FLUSH);
+        node2.put("key1", "old", HOURS.toMillis(1));
+
+        //When
+        node1.put("key1", "new", HOURS.toMillis(1));
+        node1.flush();
+
+        //Then
+        waitForKeyToBeRemoved("key1", node2);
+        assertThat(node1.get("key1"), is("new"));
+
+        node1.close();
+        node2.close();
+    }
+
+    @Test
+    public void shouldSplitLargeBatchesAcrossDatagrams() throws Exception {
+        //Given
+        UdpTransport<Integer> transport1 = new UdpTransport<>(KeyCodec.INTEGER);
+        UdpTransport<Integer> transport2 = new UdpTransport<>(KeyCodec.INTEGER);
+        transport1.addPeer(transport2.localAddress());
+        CoherentExpiringMap<Integer, String> node1 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport1, NEVER_FLUSH);
+        ExpiringMap<Integer, String> local2 = new ExpiringMap<>();
+        new CoherentExpiringMap<>(local2, transport2, NEVER_FLUSH);
+        int numEntries = 1000;
+        for (int i = 0; i < numEntries; i++)
+            local2.put(i, "value" + i, HOURS.toMillis(1));
+
+        //When
+        for (int i = 0; i < numEntries; i++)
+            node1.remove(i);
+        node1.flush();
+
+        //Then
+        int count = 0;
+        while (local2.size() > 0) {
+            Thread.sleep(1);
+            if (count++ > 2000)
+                throw new RuntimeException("Peer still holds entries: " + local2.size());
+        }
+    }
+
+    @Test
+    public void shouldRetryBatchWhenPublishFails() {
+        //Given a transport that fails once
+        RecordingTransport transport = new RecordingTransport();
+        transport.failures = 1;
+        CoherentExpiringMap<String, String> node = new CoherentExpiringMap<>(new ExpiringMap<>(), transport, NEVER_FLUSH);
+
+        //When
+        node.remove("key1");
+        node.flush();
+        node.flush();
+
+        //Then
+        assertThat(node.failedFlushes(), is(1L));
+        assertThat(transport.batches.size(), is(1));
+        assertThat(transport.batches.get(0), is(Arrays.asList("key1")));
+    }
+
+    @Test
+    public void shouldSkipKeysTooLargeForADatagram() throws Exception {
+        //Given
+        UdpTransport<String> transport1 = new UdpTransport<>(KeyCodec.STRING);
+        UdpTransport<String> transport2 = new UdpTransport<>(KeyCodec.STRING);
+        transport1.addPeer(transport2.localAddress());
+        CoherentExpiringMap<String, String> node1 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport1, NEVER_FLUSH);
+        CoherentExpiringMap<String, String> node2 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport2, NEVER_FLUSH);
+        node2.put("key1", "old", HOURS.toMillis(1));
+        node2.put("key2", "old", HOURS.toMillis(1));
+        char[] large = new char[2000];
+        Arrays.fill(large, 'k');
+
+        //When
+        node1.put(new String(large), "value", HOURS.toMillis(1));
+        node1.put("key1", "new", HOURS.toMillis(1));
+        node1.flush();
+
+        //Then
+        waitForKeyToBeRemoved("key1", node2);
+        assertThat(transport1.skippedKeys(), is(1L));
+        assertThat(node1.failedFlushes(), is(0L));
+
+        //and later invalidations still go out
+        node1.remove("key2");
+        node1.flush();
+        waitForKeyToBeRemoved("key2", node2);
+
+        node1.close();
+        node2.close();
+    }
+
+    @Test
+    public void shouldKeepReceivingAfterMalformedDatagrams() throws Exception {
+        //Given
+        UdpTransport<String> transport1 = new UdpTransport<>(KeyCodec.STRING);
+        UdpTransport<String> transport2 = new UdpTransport<>(KeyCodec.STRING);
+        transport1.addPeer(transport2.localAddress());
+        CoherentExpiringMap<String, String> node1 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport1, NEVER_FLUSH);
+        CoherentExpiringMap<String, String> node2 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport2, NEVER_FLUSH);
+        node2.put("key1", "old", HOURS.toMillis(1));
+
+        //When a truncated datagram and one with a negative key length arrive
+        try (DatagramSocket socket = new DatagramSocket()) {
+            byte[] truncated = {0, 0, 0, 5};
+            byte[] negativeLength = {0, 0, 0, 1, -1, -1, -1, -1};
+            socket.send(new DatagramPacket(truncated, truncated.length, transport2.localAddress()));
+            socket.send(new DatagramPacket(negativeLength, negativeLength.length, transport2.localAddress()));
+        }
+        waitForDroppedDatagrams(2, transport2);
+        node1.put("key1", "new", HOURS.toMillis(1));
+        node1.flush();
+
+        //Then
+        waitForKeyToBeRemoved("key1", node2);
+
+        node1.close();
+        node2.close();
+    }
+
+    @Test
+    public void shouldKeepReceivingAfterListenerFailure() throws Exception {
+        //Given a peer whose first local remove fails
+        UdpTransport<String> transport1 = new UdpTransport<>(KeyCodec.STRING);
+        UdpTransport<String> transport2 = new UdpTransport<>(KeyCodec.STRING);
+        transport1.addPeer(transport2.localAddress());
+        CoherentExpiringMap<String, String> node1 = new CoherentExpiringMap<>(new ExpiringMap<>(), transport1, NEVER_FLUSH);
+        ExpiringMap<String, String> local2 = new ExpiringMap<>();
+        CoherentExpiringMap<String, String> node2 = new CoherentExpiringMap<>(new FailOnceMap(local2), transport2, NEVER_FLUSH);
+        node2.put("key1", "old", HOURS.toMillis(1));
+
+        //When
+        node1.remove("key1");
+        node1.flush();
+        waitForDroppedDatagrams(1, transport2);
+        node1.remove("key1");
+        node1.flush();
+
+        //Then
+        waitForKeyToBeRemoved("key1", node2);
+
+        node1.close();
+        node2.close();
+    }
+
+    private void waitForDroppedDatagrams(long expected, UdpTransport<?> transport) throws InterruptedException {
+        int count = 0;
+        while (transport.droppedDatagrams() < expected) {
+            Thread.sleep(1);
+            if (count++ > 2000)
+                throw new RuntimeException("Datagrams were not dropped: " + transport.droppedDatagrams());
+        }
+    }
+
+    private void waitForKeyToBeRemoved(String key, CoherentExpiringMap<String, String> map) throws InterruptedException {
+        int count = 0;
+        while (map.get(key) != null) {
+            Thread.sleep(1);
+            if (count++ > 2000)
+                throw new RuntimeException("Key took more than 2s to be invalidated: " + key);
+        }
+    }
+
+    private static class RecordingTransport implements InvalidationTransport<String> {
+        private List<List<String>> batches = new ArrayList<>();
+        private Consumer<Collection<String>> listener;
+        private int failures;
+
+        @Override
+        public void publish(Collection<String> keys) {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("Transport unavailable");
+            }
+            batches.add(new ArrayList<>(keys));
+        }
+
+        @Override
+        public void subscribe(Consumer<Collection<String>> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class FailOnceMap implements ExpireMap<String, String> {
+        private final ExpireMap<String, String> delegate;
+        private boolean failed;
+
+        FailOnceMap(ExpireMap<String, String> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void put(String key, String value, long timeoutMs) {
+            delegate.put(key, value, timeoutMs);
+        }
+
+        @Override
+        public String get(String key) {
+            return delegate.get(key);
+        }
+
+        @Override
+        public void remove(String key) {
+            if (!failed) {
+                failed = true;
+                throw new IllegalStateException("Remove failed");
+            }
+            delegate.remove(key);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.shekhar.expiringmap.sim;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Chooses which key an operation targets, from the range [0, keys).
+ */
+public interface KeyDistribution {
+
+    int next(Random random);
+
+    static KeyDistribution uniform(int keys) {
+        return random -> random.nextInt(keys);
+    }
+
+    /**
+     * Key k is chosen with probability proportional to 1 / (k + 1)^exponent,
+     * so a handful of low keys take most of the traffic.
+     */
+    static KeyDistribution zipf(int keys, double exponent) {
+        double[] cumulative = new double[keys];
+        double total = 0;
+        for (int k = 0; k < keys; k++) {
+            total += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = total;
+        }
+        double sum = total;
+        return random -> {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            return Math.min(index < 0 ? -index - 1 : index, keys - 1);
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package com.shekhar.expiringmap.sim;
+
+public class Operation {
+    public enum Type { PUT, GET, REMOVE }
+
+    private final long time;
+    private final Type type;
+    private final int key;
+    private final long timeoutMs;
+
+    public Operation(long time, Type type, int key, long timeoutMs) {
+        this.time = time;
+        this.type = type;
+        this.key = key;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public long time() {
+        return time;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public int key() {
+        return key;
+    }
+
+    public long timeoutMs() {
+        return timeoutMs;
+    }
+}
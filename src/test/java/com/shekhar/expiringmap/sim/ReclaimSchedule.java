@@ -0,0 +1,23 @@
+package com.shekhar.expiringmap.sim;
+
+/**
+ * Decides when the simulated expiry thread runs a pass over the cache.
+ */
+public interface ReclaimSchedule {
+
+    /**
+     * @param lastPass     virtual time of the previous pass
+     * @param nextDeadline earliest deadline written so far that is still outstanding, or Long.MAX_VALUE
+     * @return virtual time of the next pass
+     */
+    long next(long lastPass, long nextDeadline);
+
+    /**
+     * Wakes exactly at each deadline, like the background expiry thread.
+     */
+    ReclaimSchedule EAGER = (lastPass, nextDeadline) -> nextDeadline;
+
+    static ReclaimSchedule every(long intervalNanos) {
+        return (lastPass, nextDeadline) -> lastPass + intervalNanos;
+    }
+}
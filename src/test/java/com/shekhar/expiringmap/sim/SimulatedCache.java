@@ -0,0 +1,112 @@
+package com.shekhar.expiringmap.sim;
+
+import com.shekhar.expiringmap.CompactExpiringMap;
+import com.shekhar.expiringmap.ExpireMap;
+import com.shekhar.expiringmap.ExpiringMap;
+
+/**
+ * The operations the simulation needs from a cache under test.
+ */
+public interface SimulatedCache extends ExpireMap<Integer, String> {
+
+    int expireDue();
+
+    int size();
+
+    /**
+     * Whether the cache still holds memory for the key, without any side effects.
+     */
+    boolean isResident(Integer key);
+
+    int scheduled();
+
+    long memoryFootprint();
+
+    static SimulatedCache of(ExpiringMap<Integer, String> map) {
+        return new SimulatedCache() {
+            @Override
+            public void put(Integer key, String value, long timeoutMs) {
+                map.put(key, value, timeoutMs);
+            }
+
+            @Override
+            public String get(Integer key) {
+                return map.get(key);
+            }
+
+            @Override
+            public void remove(Integer key) {
+                map.remove(key);
+            }
+
+            @Override
+            public int expireDue() {
+                return map.expireDue();
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public boolean isResident(Integer key) {
+                return map.isResident(key);
+            }
+
+            @Override
+            public int scheduled() {
+                return map.scheduled();
+            }
+
+            @Override
+            public long memoryFootprint() {
+                return map.memoryFootprint();
+            }
+        };
+    }
+
+    static SimulatedCache of(CompactExpiringMap<Integer, String> map) {
+        return new SimulatedCache() {
+            @Override
+            public void put(Integer key, String value, long timeoutMs) {
+                map.put(key, value, timeoutMs);
+            }
+
+            @Override
+            public String get(Integer key) {
+                return map.get(key);
+            }
+
+            @Override
+            public void remove(Integer key) {
+                map.remove(key);
+            }
+
+            @Override
+            public int expireDue() {
+                return map.expireDue();
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public boolean isResident(Integer key) {
+                return map.isResident(key);
+            }
+
+            @Override
+            public int scheduled() {
+                return 0;
+            }
+
+            @Override
+            public long memoryFootprint() {
+                return map.memoryFootprint();
+            }
+        };
+    }
+}
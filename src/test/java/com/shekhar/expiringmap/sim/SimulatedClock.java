@@ -0,0 +1,42 @@
+package com.shekhar.expiringmap.sim;
+
+import com.shekhar.expiringmap.util.Clock;
+import com.shekhar.expiringmap.util.WaitService;
+
+/**
+ * Clock that only moves when told to, in nanoseconds.
+ */
+public class SimulatedClock implements Clock {
+    private volatile long now;
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    public void advanceTo(long time) {
+        if (time < now)
+            throw new IllegalArgumentException("Time cannot move backwards: " + time + " < " + now);
+        now = time;
+    }
+
+    public void advanceBy(long nanos) {
+        advanceTo(now + nanos);
+    }
+
+    /**
+     * Wait service whose waits move this clock forward instead of blocking.
+     */
+    public WaitService waitService() {
+        return new WaitService() {
+            @Override
+            public void doWait(long ms, int ns) {
+                advanceBy(ms * 1000000 + ns);
+            }
+
+            @Override
+            public void doNotify() {
+            }
+        };
+    }
+}
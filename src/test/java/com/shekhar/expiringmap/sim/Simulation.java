@@ -0,0 +1,128 @@
+package com.shekhar.expiringmap.sim;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Replays a workload against a cache on virtual time.
+ * <p>
+ *
+ * Nothing sleeps: the clock jumps straight to the next operation or to the
+ * next expiry pass chosen by the {@link ReclaimSchedule}, whichever is
+ * sooner, so hours of activity run in seconds and every run with the same
+ * seed is identical.
+ * <p>
+ * A shadow model records the deadline of the latest put for each key. Gets
+ * are checked against it to count stale reads and early misses, and each
+ * pass measures how long after its deadline an entry's memory was actually
+ * reclaimed. That probe goes through {@link SimulatedCache#isResident} so it
+ * neither counts as a lookup nor reclaims anything itself.
+ */
+public class Simulation {
+    private final SimulatedClock clock = new SimulatedClock();
+    private final SimulatedCache cache;
+    private final Workload workload;
+    private final ReclaimSchedule schedule;
+    private final Map<Integer, Long> deadlines = new HashMap<>();
+    private final Map<Integer, Long> overdue = new HashMap<>();
+    private final PriorityQueue<long[]> outstanding = new PriorityQueue<>(
+            10, (e1, e2) -> Long.compare(e1[0], e2[0]));
+
+    /**
+     * @param cacheFactory builds the cache under test around the virtual clock;
+     *                     it must not start a background expiry thread, and any
+     *                     waits should go through the clock's wait service
+     */
+    public Simulation(Function<SimulatedClock, SimulatedCache> cacheFactory, Workload workload, ReclaimSchedule schedule) {
+        this.cache = cacheFactory.apply(clock);
+        this.workload = workload;
+        this.schedule = schedule;
+    }
+
+    public SimulationResult run(long durationNanos) {
+        SimulationResult result = new SimulationResult();
+        long lastPass = clock.now();
+        Operation next = workload.next();
+
+        while (true) {
+            long nextDeadline = outstanding.isEmpty() ? Long.MAX_VALUE : outstanding.peek()[0];
+            long nextPass = Math.max(schedule.next(lastPass, nextDeadline), clock.now());
+
+            if (nextPass <= next.time() && nextPass <= durationNanos) {
+                clock.advanceTo(nextPass);
+                reclaim(result);
+                lastPass = nextPass;
+            } else if (next.time() <= durationNanos) {
+                //an operation that waited in virtual time delays the ones behind it
+                clock.advanceTo(Math.max(next.time(), clock.now()));
+                apply(next, result);
+                next = workload.next();
+            } else {
+                return result;
+            }
+        }
+    }
+
+    private void apply(Operation operation, SimulationResult result) {
+        int key = operation.key();
+        long now = clock.now();
+        result.recordOperation(operation.type());
+
+        switch (operation.type()) {
+            case PUT:
+                long deadline = now + MILLISECONDS.toNanos(operation.timeoutMs());
+                cache.put(key, "value", operation.timeoutMs());
+                deadlines.put(key, deadline);
+                overdue.remove(key);
+                outstanding.add(new long[]{deadline, key});
+                break;
+            case REMOVE:
+                cache.remove(key);
+                deadlines.remove(key);
+                overdue.remove(key);
+                break;
+            case GET:
+                Long expected = deadlines.get(key);
+                boolean live = expected != null && expected > now;
+                boolean found = cache.get(key) != null;
+                if (found && live)
+                    result.recordHit();
+                else if (found)
+                    result.recordStaleRead();
+                else if (live)
+                    result.recordEarlyMiss();
+                else
+                    result.recordMiss();
+                break;
+        }
+        result.recordFootprint(cache.size(), cache.scheduled());
+    }
+
+    private void reclaim(SimulationResult result) {
+        result.recordPass(cache.expireDue());
+        result.recordMemory(cache.memoryFootprint());
+        long now = clock.now();
+
+        while (!outstanding.isEmpty() && outstanding.peek()[0] <= now) {
+            long[] entry = outstanding.poll();
+            int key = (int) entry[1];
+            if (deadlines.containsKey(key) && deadlines.get(key) == entry[0])
+                overdue.put(key, entry[0]);
+        }
+
+        Iterator<Map.Entry<Integer, Long>> it = overdue.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Long> entry = it.next();
+            if (!cache.isResident(entry.getKey())) {
+                result.recordReclaim(now - entry.getValue());
+                deadlines.remove(entry.getKey());
+                it.remove();
+            }
+        }
+    }
+}
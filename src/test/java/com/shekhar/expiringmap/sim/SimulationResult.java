@@ -0,0 +1,145 @@
+package com.shekhar.expiringmap.sim;
+
+/**
+ * Counters gathered over one simulation run. Times are virtual nanoseconds.
+ */
+public class SimulationResult {
+    private long operations;
+    private long puts;
+    private long gets;
+    private long hits;
+    private long misses;
+    private long staleReads;
+    private long earlyMisses;
+    private long passes;
+    private long expiryEntriesProcessed;
+    private long reclaimed;
+    private long lagTotal;
+    private long lagMax;
+    private long sizeTotal;
+    private int sizePeak;
+    private int scheduledPeak;
+    private long footprintPeak;
+
+    void recordOperation(Operation.Type type) {
+        operations++;
+        if (type == Operation.Type.PUT)
+            puts++;
+        else if (type == Operation.Type.GET)
+            gets++;
+    }
+
+    void recordHit() {
+        hits++;
+    }
+
+    void recordMiss() {
+        misses++;
+    }
+
+    void recordStaleRead() {
+        staleReads++;
+    }
+
+    void recordEarlyMiss() {
+        earlyMisses++;
+    }
+
+    void recordPass(int processed) {
+        passes++;
+        expiryEntriesProcessed += processed;
+    }
+
+    void recordReclaim(long lag) {
+        reclaimed++;
+        lagTotal += lag;
+        lagMax = Math.max(lagMax, lag);
+    }
+
+    void recordFootprint(int size, int scheduled) {
+        sizeTotal += size;
+        sizePeak = Math.max(sizePeak, size);
+        scheduledPeak = Math.max(scheduledPeak, scheduled);
+    }
+
+    void recordMemory(long bytes) {
+        footprintPeak = Math.max(footprintPeak, bytes);
+    }
+
+    public long operations() {
+        return operations;
+    }
+
+    public long gets() {
+        return gets;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Gets that returned a value after its timeout had passed.
+     */
+    public long staleReads() {
+        return staleReads;
+    }
+
+    /**
+     * Gets that found nothing although the latest put for the key had not yet timed out.
+     */
+    public long earlyMisses() {
+        return earlyMisses;
+    }
+
+    public long passes() {
+        return passes;
+    }
+
+    public long reclaimed() {
+        return reclaimed;
+    }
+
+    public long meanExpiryLag() {
+        return reclaimed == 0 ? 0 : lagTotal / reclaimed;
+    }
+
+    public long maxExpiryLag() {
+        return lagMax;
+    }
+
+    public long meanSize() {
+        return operations == 0 ? 0 : sizeTotal / operations;
+    }
+
+    public int peakSize() {
+        return sizePeak;
+    }
+
+    public int peakScheduled() {
+        return scheduledPeak;
+    }
+
+    /**
+     * Largest estimated footprint seen at the end of an expiry pass.
+     */
+    public long peakMemoryFootprint() {
+        return footprintPeak;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ops: %,d (puts %,d, gets %,d)%n" +
+                        "hits: %,d misses: %,d stale reads: %,d early misses: %,d%n" +
+                        "passes: %,d expiry entries processed: %,d reclaimed: %,d%n" +
+                        "expiry lag mean: %,d ns max: %,d ns%n" +
+                        "size mean: %,d peak: %,d scheduled peak: %,d footprint peak: %,d bytes%n",
+                operations, puts, gets, hits, misses, staleReads, earlyMisses,
+                passes, expiryEntriesProcessed, reclaimed, meanExpiryLag(), lagMax,
+                meanSize(), sizePeak, scheduledPeak, footprintPeak);
+    }
+}
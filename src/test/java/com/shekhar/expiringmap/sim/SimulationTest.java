@@ -0,0 +1,162 @@
+package com.shekhar.expiringmap.sim;
+
+import com.shekhar.expiringmap.CacheStats;
+import com.shekhar.expiringmap.CompactExpiringMap;
+import com.shekhar.expiringmap.ExpiringMap;
+import com.shekhar.expiringmap.OverloadPolicy;
+import com.shekhar.expiringmap.OverloadStats;
+import com.shekhar.expiringmap.util.WaitService;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SimulationTest {
+
+    private Simulation simulation(long seed, KeyDistribution keys, TtlDistribution ttl, ReclaimSchedule schedule) {
+        return new Simulation(
+                clock -> SimulatedCache.of(new ExpiringMap<>(clock, WaitService.DEFAULT, false)),
+                new Workload(seed, 1000, 0.2, 0.01, keys, ttl),
+                schedule);
+    }
+
+    @Test
+    public void shouldRunAnHourOfActivityWithoutStaleReadsWhenExpiringEagerly() {
+        //Given
+        Simulation simulation = simulation(1, KeyDistribution.zipf(10000, 1.1), TtlDistribution.fixed(30000), ReclaimSchedule.EAGER);
+
+        //When
+        SimulationResult result = simulation.run(HOURS.toNanos(1));
+
+        //Then
+        assertTrue(result.operations() > 3000000);
+        assertThat(result.staleReads(), is(0L));
+        assertThat(result.maxExpiryLag(), is(0L));
+        assertTrue(result.reclaimed() > 0);
+    }
+
+    @Test
+    public void shouldBoundExpiryLagByThePassInterval() {
+        //Given
+        long interval = SECONDS.toNanos(1);
+        Simulation simulation = simulation(1, KeyDistribution.uniform(1000), TtlDistribution.uniform(100, 5000), ReclaimSchedule.every(interval));
+
+        //When
+        SimulationResult result = simulation.run(HOURS.toNanos(1) / 6);
+
+        //Then
+        assertTrue(result.staleReads() > 0);
+        assertTrue(result.maxExpiryLag() <= interval);
+        assertTrue(result.meanExpiryLag() > 0);
+    }
+
+    @Test
+    public void shouldCountEarlyMissesWhenOverwrittenKeysExpireWithTheirOldTimeout() {
+        //Given short and long timeouts are mixed on the same hot keys
+        Simulation simulation = simulation(1, KeyDistribution.uniform(100),
+                random -> random.nextBoolean() ? 10 : 60000, ReclaimSchedule.EAGER);
+
+        //When
+        SimulationResult result = simulation.run(SECONDS.toNanos(60));
+
+        //Then
+        assertTrue(result.earlyMisses() > 0);
+    }
+
+    @Test
+    public void shouldAvoidEarlyMissesAndMostStaleReadsWithCompactMap() {
+        //Given the same workload against both maps
+        Workload workload = new Workload(1, 1000, 0.2, 0.01, KeyDistribution.uniform(100), random -> random.nextBoolean() ? 10 : 60000);
+        Workload sameWorkload = new Workload(1, 1000, 0.2, 0.01, KeyDistribution.uniform(100), random -> random.nextBoolean() ? 10 : 60000);
+
+        //When
+        SimulationResult compact = new Simulation(
+                clock -> SimulatedCache.of(new CompactExpiringMap<>(clock, false)),
+                workload, ReclaimSchedule.every(SECONDS.toNanos(1))).run(SECONDS.toNanos(60));
+        SimulationResult standard = new Simulation(
+                clock -> SimulatedCache.of(new ExpiringMap<>(clock, WaitService.DEFAULT, false)),
+                sameWorkload, ReclaimSchedule.every(SECONDS.toNanos(1))).run(SECONDS.toNanos(60));
+
+        //Then stale reads only remain within the millisecond tick
+        assertThat(compact.earlyMisses(), is(0L));
+        assertTrue(compact.staleReads() * 10 < standard.staleReads());
+        assertTrue(compact.meanExpiryLag() > 0);
+        assertTrue(compact.peakMemoryFootprint() > 0);
+    }
+
+    @Test
+    public void shouldNotCountItsOwnProbesAsLookups() {
+        //Given
+        List<ExpiringMap<Integer, String>> maps = new ArrayList<>();
+        Simulation simulation = new Simulation(
+                clock -> {
+                    ExpiringMap<Integer, String> map = new ExpiringMap<>(clock, WaitService.DEFAULT, false);
+                    maps.add(map);
+                    return SimulatedCache.of(map);
+                },
+                new Workload(1, 1000, 0.2, 0.01, KeyDistribution.uniform(1000), TtlDistribution.fixed(500)),
+                ReclaimSchedule.every(MILLISECONDS.toNanos(100)));
+
+        //When
+        SimulationResult result = simulation.run(SECONDS.toNanos(60));
+
+        //Then every lookup the map saw came from the workload
+        CacheStats stats = maps.get(0).stats();
+        assertTrue(result.reclaimed() > 0);
+        assertThat(stats.hits() + stats.misses(), is(result.gets()));
+    }
+
+    @Test
+    public void shouldThrottleWritersOnVirtualTime() {
+        //Given a queue limit that long timeouts will soon reach
+        List<ExpiringMap<Integer, String>> maps = new ArrayList<>();
+        Simulation simulation = new Simulation(
+                clock -> {
+                    ExpiringMap<Integer, String> map = new ExpiringMap<>(clock, clock.waitService(), false);
+                    map.setOverloadPolicy(OverloadPolicy.throttle(100, Long.MAX_VALUE, 5));
+                    maps.add(map);
+                    return SimulatedCache.of(map);
+                },
+                new Workload(1, 1000, 0.5, 0, KeyDistribution.uniform(10000), TtlDistribution.fixed(HOURS.toMillis(1))),
+                ReclaimSchedule.EAGER);
+
+        //When
+        simulation.run(SECONDS.toNanos(10));
+
+        //Then every throttled put waited the full 5ms of virtual time
+        OverloadStats stats = maps.get(0).overloadStats();
+        assertTrue(stats.throttledPuts() > 0);
+        assertThat(stats.throttledNanos(), is(stats.throttledPuts() * MILLISECONDS.toNanos(5)));
+    }
+
+    @Test
+    public void shouldProduceIdenticalResultsForTheSameSeed() {
+        SimulationResult first = simulation(42, KeyDistribution.zipf(1000, 1.0), TtlDistribution.exponential(2000), ReclaimSchedule.every(MILLISECONDS.toNanos(100)))
+                .run(SECONDS.toNanos(600));
+        SimulationResult second = simulation(42, KeyDistribution.zipf(1000, 1.0), TtlDistribution.exponential(2000), ReclaimSchedule.every(MILLISECONDS.toNanos(100)))
+                .run(SECONDS.toNanos(600));
+
+        assertThat(first.toString(), is(second.toString()));
+    }
+
+    @Test
+    public void shouldFavourLowKeysInZipfDistribution() {
+        KeyDistribution keys = KeyDistribution.zipf(1000, 1.0);
+        Random random = new Random(7);
+        int[] counts = new int[1000];
+        for (int i = 0; i < 100000; i++)
+            counts[keys.next(random)]++;
+
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > counts[10]);
+        assertTrue(counts[10] > counts[999]);
+    }
+}
@@ -0,0 +1,23 @@
+package com.shekhar.expiringmap.sim;
+
+import java.util.Random;
+
+/**
+ * Chooses the timeout, in milliseconds, that a put is written with.
+ */
+public interface TtlDistribution {
+
+    long nextMs(Random random);
+
+    static TtlDistribution fixed(long ms) {
+        return random -> ms;
+    }
+
+    static TtlDistribution uniform(long minMs, long maxMs) {
+        return random -> minMs + (long) (random.nextDouble() * (maxMs - minMs + 1));
+    }
+
+    static TtlDistribution exponential(long meanMs) {
+        return random -> (long) (-Math.log(1 - random.nextDouble()) * meanMs);
+    }
+}
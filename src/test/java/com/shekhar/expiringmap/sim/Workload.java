@@ -0,0 +1,44 @@
+package com.shekhar.expiringmap.sim;
+
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Seeded stream of operations. Arrivals are Poisson at the given rate and
+ * each operation is a put, remove or get according to the given ratios.
+ */
+public class Workload {
+    private final Random random;
+    private final double meanGapNanos;
+    private final double putRatio;
+    private final double removeRatio;
+    private final KeyDistribution keys;
+    private final TtlDistribution ttl;
+    private long time;
+
+    public Workload(long seed, double opsPerSecond, double putRatio, double removeRatio,
+                    KeyDistribution keys, TtlDistribution ttl) {
+        if (putRatio + removeRatio > 1)
+            throw new IllegalArgumentException("Put and remove ratios must not exceed 1");
+
+        this.random = new Random(seed);
+        this.meanGapNanos = SECONDS.toNanos(1) / opsPerSecond;
+        this.putRatio = putRatio;
+        this.removeRatio = removeRatio;
+        this.keys = keys;
+        this.ttl = ttl;
+    }
+
+    public Operation next() {
+        time += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+
+        double roll = random.nextDouble();
+        int key = keys.next(random);
+        if (roll < putRatio)
+            return new Operation(time, Operation.Type.PUT, key, ttl.nextMs(random));
+        if (roll < putRatio + removeRatio)
+            return new Operation(time, Operation.Type.REMOVE, key, 0);
+        return new Operation(time, Operation.Type.GET, key, 0);
+    }
+}
@@ -0,0 +1,50 @@
+package com.shekhar.slow.expiringmap;
+
+import com.shekhar.expiringmap.CompactExpiringMap;
+import com.shekhar.expiringmap.ExpiringMap;
+import com.shekhar.expiringmap.sim.KeyDistribution;
+import com.shekhar.expiringmap.sim.ReclaimSchedule;
+import com.shekhar.expiringmap.sim.SimulatedCache;
+import com.shekhar.expiringmap.sim.SimulatedClock;
+import com.shekhar.expiringmap.sim.Simulation;
+import com.shekhar.expiringmap.sim.SimulationResult;
+import com.shekhar.expiringmap.sim.TtlDistribution;
+import com.shekhar.expiringmap.sim.Workload;
+import com.shekhar.expiringmap.util.WaitService;
+
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class ExpiryStrategyComparison {
+
+    public static void main(String[] args) {
+        new ExpiryStrategyComparison().run();
+    }
+
+    public void run() {
+        Function<SimulatedClock, SimulatedCache> standard = clock -> SimulatedCache.of(new ExpiringMap<>(clock, WaitService.DEFAULT, false));
+        Function<SimulatedClock, SimulatedCache> compact = clock -> SimulatedCache.of(new CompactExpiringMap<>(clock, false));
+
+        compare("eager", standard, ReclaimSchedule.EAGER);
+        compare("every 100ms", standard, ReclaimSchedule.every(MILLISECONDS.toNanos(100)));
+        compare("every 1s", standard, ReclaimSchedule.every(SECONDS.toNanos(1)));
+        compare("compact every 100ms", compact, ReclaimSchedule.every(MILLISECONDS.toNanos(100)));
+    }
+
+    private void compare(String name, Function<SimulatedClock, SimulatedCache> cache, ReclaimSchedule schedule) {
+        Simulation simulation = new Simulation(
+                cache,
+                new Workload(1, 2000, 0.1, 0.01, KeyDistribution.zipf(100000, 1.1), TtlDistribution.exponential(60000)),
+                schedule);
+
+        long start = System.nanoTime();
+        SimulationResult result = simulation.run(HOURS.toNanos(4));
+        long end = System.nanoTime();
+
+        System.out.printf("== %s (took %,d ms)%n%s%n", name, NANOSECONDS.toMillis(end - start), result);
+    }
+}
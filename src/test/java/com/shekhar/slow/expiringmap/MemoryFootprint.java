@@ -0,0 +1,49 @@
+package com.shekhar.slow.expiringmap;
+
+import com.shekhar.expiringmap.CompactExpiringMap;
+import com.shekhar.expiringmap.ExpiringMap;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+
+/**
+ * Compares measured heap growth with the memoryFootprint() estimates.
+ * Run with a large heap, e.g. -Xmx8g, and optionally the entry count as argument.
+ */
+public class MemoryFootprint {
+
+    public static void main(String[] args) {
+        int numEntries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        new MemoryFootprint().run(numEntries);
+    }
+
+    public void run(int numEntries) {
+        Integer[] keys = new Integer[numEntries];
+        for (int i = 0; i < numEntries; i++)
+            keys[i] = i;
+        String value = "value";
+
+        long before = usedHeap();
+        ExpiringMap<Integer, String> standard = new ExpiringMap<>();
+        for (Integer key : keys)
+            standard.put(key, value, HOURS.toMillis(1));
+        long standardUsed = usedHeap() - before;
+        System.out.printf("ExpiringMap        measured: %,d bytes (%d per entry) estimated: %,d bytes%n",
+                standardUsed, standardUsed / numEntries, standard.memoryFootprint());
+        standard = null;
+
+        before = usedHeap();
+        CompactExpiringMap<Integer, String> compact = new CompactExpiringMap<>();
+        for (Integer key : keys)
+            compact.put(key, value, HOURS.toMillis(1));
+        long compactUsed = usedHeap() - before;
+        System.out.printf("CompactExpiringMap measured: %,d bytes (%d per entry) estimated: %,d bytes%n",
+                compactUsed, compactUsed / numEntries, compact.memoryFootprint());
+    }
+
+    private long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}